@@ -0,0 +1,75 @@
+package benchmark;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import chess.ChessPosition;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the ChessGame operations the server runs for every move: validating moves, checking for
+ * the end of the game, and converting the game to and from JSON and its stored binary form.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GameBenchmark {
+    @Param({"START", "KIWIPETE", "ENDGAME"})
+    public Position position;
+
+    private ChessGame game;
+    private String serialized;
+    private byte[] encoded;
+    private ChessPosition from;
+    private ChessMove move;
+
+    @Setup
+    public void setup() {
+        game = position.game();
+        serialized = game.toString();
+        encoded = game.toBytes();
+        // Benchmark the first legal move so that each position has one to work with.
+        move = game.allLegalMoves().iterator().next();
+        from = move.getStartPosition();
+    }
+
+    @Benchmark
+    public Collection<ChessMove> validMoves() {
+        return game.validMoves(from);
+    }
+
+    @Benchmark
+    public boolean isInCheckmate() {
+        return game.isInCheckmate(game.getTeamTurn());
+    }
+
+    @Benchmark
+    public boolean isMoveLegal() {
+        return game.getBoard().isMoveLegal(move);
+    }
+
+    @Benchmark
+    public String serialize() {
+        return game.toString();
+    }
+
+    @Benchmark
+    public ChessGame deserialize() {
+        return ChessGame.fromString(serialized);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return game.toBytes();
+    }
+
+    @Benchmark
+    public ChessGame decode() {
+        return ChessGame.fromBytes(encoded);
+    }
+}
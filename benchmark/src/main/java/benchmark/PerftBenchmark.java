@@ -0,0 +1,79 @@
+package benchmark;
+
+import chess.ChessBoard;
+import chess.MoveGenerator;
+import chess.MoveList;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static chess.ChessGame.TeamColor;
+
+/**
+ * Counts the leaf nodes of the move tree from each standard position. The nodes counter is
+ * reported by JMH as nodes per second, which is the number to compare across commits.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class PerftBenchmark {
+    @Param({"START", "KIWIPETE", "ENDGAME"})
+    public Position position;
+
+    private ChessBoard board;
+    private TeamColor toMove;
+    private MoveList[] moveLists;
+
+    /**
+     * Adds the nodes searched by each invocation, so JMH reports them as a rate alongside the
+     * invocation rate.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        var game = position.game();
+        board = game.getBoard();
+        toMove = game.getTeamTurn();
+        moveLists = new MoveList[position.depth];
+        for (var i = 0; i < moveLists.length; i++) {
+            moveLists[i] = new MoveList();
+        }
+        var found = perft(toMove, position.depth);
+        if (found != position.nodes) {
+            throw new IllegalStateException(String.format("perft(%d) of %s found %d nodes, expected %d",
+                    position.depth, position, found, position.nodes));
+        }
+    }
+
+    @Benchmark
+    public long perft(Nodes counter) {
+        var nodes = perft(toMove, position.depth);
+        counter.nodes += nodes;
+        return nodes;
+    }
+
+    private long perft(TeamColor color, int depth) {
+        var moves = moveLists[depth - 1];
+        moves.clear();
+        MoveGenerator.generate(board, color, -1L, moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        var other = color == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+        var nodes = 0L;
+        for (var i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            nodes += perft(other, depth - 1);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+}
@@ -0,0 +1,30 @@
+package benchmark;
+
+import chess.ChessGame;
+
+/**
+ * The positions the benchmarks run against. They are the standard perft test positions, so the
+ * node counts can be checked against published values and compared from commit to commit.
+ */
+public enum Position {
+    START("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1", 4, 197_281),
+    KIWIPETE("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1", 3, 97_862),
+    ENDGAME("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1", 5, 674_624);
+
+    private final String fen;
+    final int depth;
+    final long nodes;
+
+    Position(String fen, int depth, long nodes) {
+        this.fen = fen;
+        this.depth = depth;
+        this.nodes = nodes;
+    }
+
+    /**
+     * @return a new game at this position
+     */
+    public ChessGame game() {
+        return ChessGame.fromFen(fen);
+    }
+}
@@ -43,7 +43,7 @@ public class ChessClient implements MessageObserver {
                 new CommandInfo("join", this::join, "join <POSITION> [WHITE|BLACK]", "a game"),
                 new CommandInfo("observe", this::observe, "observe <ID>", "a game"),
                 new CommandInfo("redraw", this::redraw, "redraw", "the board"),
-                new CommandInfo("legal", this::legal, "legal", "moves for the current board"),
+                new CommandInfo("legal", this::legal, "legal [<cr>]", "moves for the current board or one piece"),
                 new CommandInfo("move", this::move, "move <crcr> [q|r|b|n]", "a piece with optional promotion"),
                 new CommandInfo("leave", this::leave, "leave", "the game"),
                 new CommandInfo("resign", this::resign, "resign", "the game without leaving it")
@@ -227,11 +227,17 @@ public class ChessClient implements MessageObserver {
     private String legal(String[] params) throws Exception {
         verify(gameOver() || playing() || observing(), "Not in a game");
 
-        var pos = new ChessPosition(params[0]);
         var highlights = new ArrayList<ChessPosition>();
-        highlights.add(pos);
-        for (var move : currentGame.game().validMoves(pos)) {
-            highlights.add(move.getEndPosition());
+        if (params.length == 0) {
+            for (var move : currentGame.game().allLegalMoves()) {
+                highlights.add(move.getStartPosition());
+            }
+        } else {
+            var pos = new ChessPosition(params[0]);
+            highlights.add(pos);
+            for (var move : currentGame.game().validMoves(pos)) {
+                highlights.add(move.getEndPosition());
+            }
         }
 
         printGame(highlights);
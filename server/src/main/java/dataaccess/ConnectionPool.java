@@ -0,0 +1,392 @@
+package dataaccess;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps MySQL connections open between requests so that a DAO call doesn't pay for a new TCP
+ * connection and login every time.
+ * <p>
+ * Callers get a proxy for a pooled connection. Closing the proxy hands the real connection back
+ * to the pool instead of closing it, so the usual try-with-resources code works unchanged. At
+ * most {@code maxSize} connections are open at once, counting idle ones, ones in use and ones
+ * being opened; a caller that finds them all in use waits up to {@code connectionTimeoutMs}
+ * before getting an error. A connection that has been idle
+ * for a while is checked with the validation query before it is handed out. The pool opens
+ * connections in the background until {@code minIdle} are idle, so a burst of requests
+ * doesn't have to open them, and closes idle connections beyond that once they have been idle
+ * for {@code idleTimeoutMs}. A connection held longer than {@code leakThresholdMs} is logged
+ * once with the thread that borrowed it, since it was probably never closed; a threshold of 0
+ * turns this off. Capturing where each connection was borrowed costs a stack trace per borrow, so it
+ * is only done when {@code leakStackTraces} is set.
+ * <p>
+ * Because a pooled connection lives across many requests, so does the driver's cache of
+ * prepared statements on it (see {@link DatabaseManager}). Closing a cached statement only
+ * returns it to that cache, and preparing the same SQL again on the same connection reuses it
+ * without the server parsing and planning it again.
+ */
+class ConnectionPool implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionPool.class);
+    private static final long VALIDATE_AFTER_IDLE_MS = 1_000;
+
+    private final Properties connectionProperties;
+    private final String url;
+    private final String catalog;
+    private final Settings settings;
+
+    // Borrowers hold a permit; open counts every connection against maxSize, in use or not.
+    private final Semaphore permits;
+    private final AtomicInteger open = new AtomicInteger();
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, Borrow> borrowed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong borrows = new AtomicLong();
+    private final AtomicLong waitTimeouts = new AtomicLong();
+    private final AtomicLong leaks = new AtomicLong();
+
+    /**
+     * The pool's limits. They are read from db.properties with the keys in {@link #fromProperties}.
+     */
+    record Settings(int minIdle, int maxSize, long idleTimeoutMs, long connectionTimeoutMs, String validationQuery,
+                    long leakThresholdMs, boolean leakStackTraces) {
+        static Settings fromProperties(Properties props) {
+            return new Settings(
+                    Integer.parseInt(props.getProperty("db.pool.minIdle", "2")),
+                    Integer.parseInt(props.getProperty("db.pool.maxSize", "20")),
+                    Long.parseLong(props.getProperty("db.pool.idleTimeoutMs", "600000")),
+                    Long.parseLong(props.getProperty("db.pool.connectionTimeoutMs", "30000")),
+                    props.getProperty("db.pool.validationQuery", "SELECT 1"),
+                    Long.parseLong(props.getProperty("db.pool.leakThresholdMs", "60000")),
+                    Boolean.parseBoolean(props.getProperty("db.pool.leakStackTraces", "false")));
+        }
+    }
+
+    private record PooledConnection(Connection connection, AtomicLong lastUsed) {
+    }
+
+    /**
+     * @param where the stack trace of the borrow, or null unless leakStackTraces is set
+     */
+    private record Borrow(long at, Throwable where, Thread thread, AtomicBoolean reported) {
+    }
+
+    /**
+     * @param connectionProperties passed to the driver for every connection, including the user and password
+     */
+    ConnectionPool(String url, Properties connectionProperties, String catalog, Settings settings) {
+        this.url = url;
+        this.catalog = catalog;
+        this.settings = settings;
+        this.connectionProperties = connectionProperties;
+        this.permits = new Semaphore(settings.maxSize(), true);
+
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "db-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        var checkEvery = settings.leakThresholdMs() > 0 ? Math.min(settings.idleTimeoutMs(), settings.leakThresholdMs()) : settings.idleTimeoutMs();
+        var period = Math.max(1_000, checkEvery / 2);
+        // The first run fills the pool to minIdle straight away.
+        housekeeper.scheduleWithFixedDelay(this::housekeep, 0, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return a connection that goes back to the pool when it is closed
+     * @throws SQLException if no connection could be opened or none became free in time
+     */
+    Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("connection pool is closed");
+        }
+        var deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(settings.connectionTimeoutMs());
+        try {
+            if (!permits.tryAcquire(settings.connectionTimeoutMs(), TimeUnit.MILLISECONDS)) {
+                throw waitTimeout();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted waiting for a database connection", ex);
+        }
+
+        try {
+            var pooled = takeIdle();
+            if (pooled == null) {
+                pooled = reserve() ? open() : waitForConnection(deadline);
+            }
+            var where = settings.leakStackTraces() ? new Throwable("connection borrowed here") : null;
+            borrowed.put(pooled, new Borrow(System.currentTimeMillis(), where, Thread.currentThread(), new AtomicBoolean()));
+            borrows.incrementAndGet();
+            return proxy(pooled);
+        } catch (SQLException | RuntimeException ex) {
+            permits.release();
+            throw ex;
+        }
+    }
+
+    PoolStats stats() {
+        var active = borrowed.size();
+        var idleCount = idle.size();
+        return new PoolStats(open.get(), idleCount, active, created.get(), borrows.get(), waitTimeouts.get(), leaks.get());
+    }
+
+    /**
+     * Closes the idle connections and stops handing out new ones. Borrowed connections are
+     * closed when they are returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closeQuietly(pooled);
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection, so that rarely needed ones age out, and checks
+     * that it still works if it has been sitting for a while.
+     */
+    private PooledConnection takeIdle() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (System.currentTimeMillis() - pooled.lastUsed().get() < VALIDATE_AFTER_IDLE_MS || isValid(pooled)) {
+                return pooled;
+            }
+            closeQuietly(pooled);
+        }
+        return null;
+    }
+
+    /**
+     * Waits for a connection when maxSize are open but none are idle, which happens while one
+     * is being opened for the idle deque or returned. If one is closed instead, a new one is
+     * opened in its place.
+     */
+    private PooledConnection waitForConnection(long deadline) throws SQLException {
+        try {
+            while (true) {
+                var remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw waitTimeout();
+                }
+                var pooled = idle.pollFirst(Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(50)), TimeUnit.NANOSECONDS);
+                if (pooled != null) {
+                    return pooled;
+                }
+                if (reserve()) {
+                    return open();
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("interrupted waiting for a database connection", ex);
+        }
+    }
+
+    private SQLException waitTimeout() {
+        waitTimeouts.incrementAndGet();
+        return new SQLException(String.format("no database connection available after %dms", settings.connectionTimeoutMs()));
+    }
+
+    /**
+     * Counts a connection that is about to be opened against maxSize.
+     *
+     * @return false if maxSize connections are already open
+     */
+    private boolean reserve() {
+        while (true) {
+            var count = open.get();
+            if (count >= settings.maxSize()) {
+                return false;
+            }
+            if (open.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Opens a connection that has been {@link #reserve() reserved}, giving the reservation back
+     * if it can't be opened.
+     */
+    private PooledConnection open() throws SQLException {
+        try {
+            var connection = DriverManager.getConnection(url, connectionProperties);
+            try {
+                connection.setCatalog(catalog);
+            } catch (SQLException ex) {
+                connection.close();
+                throw ex;
+            }
+            created.incrementAndGet();
+            return new PooledConnection(connection, new AtomicLong(System.currentTimeMillis()));
+        } catch (SQLException | RuntimeException ex) {
+            open.decrementAndGet();
+            throw ex;
+        }
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        try (var statement = pooled.connection().createStatement()) {
+            statement.setQueryTimeout(5);
+            statement.execute(settings.validationQuery());
+            return true;
+        } catch (SQLException ex) {
+            return false;
+        }
+    }
+
+    private void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            var connection = pooled.connection();
+            if (closed || connection.isClosed()) {
+                closeQuietly(pooled);
+                return;
+            }
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            if (!catalog.equals(connection.getCatalog())) {
+                connection.setCatalog(catalog);
+            }
+            pooled.lastUsed().set(System.currentTimeMillis());
+            idle.offerFirst(pooled);
+        } catch (SQLException ex) {
+            closeQuietly(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Closes connections that have been idle too long, keeping at least minIdle, opens
+     * connections until minIdle are idle, and reports connections that have been borrowed for
+     * longer than the leak threshold.
+     */
+    private void housekeep() {
+        var now = System.currentTimeMillis();
+        var excess = idle.size() - settings.minIdle();
+        // The oldest idle connections are at the end of the deque.
+        for (var pooled = idle.peekLast(); excess > 0 && pooled != null; pooled = idle.peekLast()) {
+            if (now - pooled.lastUsed().get() < settings.idleTimeoutMs() || !idle.removeLastOccurrence(pooled)) {
+                break;
+            }
+            closeQuietly(pooled);
+            excess--;
+        }
+
+        fillIdle();
+
+        if (settings.leakThresholdMs() <= 0) {
+            return;
+        }
+        for (var borrow : borrowed.values()) {
+            if (now - borrow.at() > settings.leakThresholdMs() && borrow.reported().compareAndSet(false, true)) {
+                leaks.incrementAndGet();
+                if (borrow.where() != null) {
+                    LOG.warn("Possible connection leak: connection held by {} for more than {}ms", borrow.thread().getName(),
+                            settings.leakThresholdMs(), borrow.where());
+                } else {
+                    LOG.warn("Possible connection leak: connection held by {} for more than {}ms", borrow.thread().getName(),
+                            settings.leakThresholdMs());
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens connections until minIdle are idle, reserving each one so that the pool never goes
+     * over maxSize open in all. New connections go to the end of the idle deque, behind the ones
+     * already in use. If the database can't be reached, the next housekeeping run tries again.
+     */
+    private void fillIdle() {
+        while (!closed && idle.size() < settings.minIdle() && reserve()) {
+            try {
+                idle.offerLast(open());
+            } catch (SQLException ex) {
+                return;
+            }
+        }
+        if (closed) {
+            // close may have drained the deque before the last connection was added.
+            PooledConnection pooled;
+            while ((pooled = idle.pollFirst()) != null) {
+                closeQuietly(pooled);
+            }
+        }
+    }
+
+    /**
+     * Wraps a pooled connection so that close returns it to the pool. Once closed, the proxy
+     * refuses to be used, so a caller that keeps a reference can't use a connection that
+     * someone else has since borrowed.
+     */
+    private Connection proxy(PooledConnection pooled) {
+        var returned = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "close" -> {
+                            if (returned.compareAndSet(false, true)) {
+                                release(pooled);
+                            }
+                            return null;
+                        }
+                        case "isClosed" -> {
+                            return returned.get() || pooled.connection().isClosed();
+                        }
+                        case "equals" -> {
+                            return proxy == args[0];
+                        }
+                        case "hashCode" -> {
+                            return System.identityHashCode(proxy);
+                        }
+                        case "toString" -> {
+                            return "Pooled " + pooled.connection();
+                        }
+                        default -> {
+                            if (returned.get()) {
+                                throw new SQLException("Connection is closed");
+                            }
+                            try {
+                                return method.invoke(pooled.connection(), args);
+                            } catch (InvocationTargetException ex) {
+                                throw ex.getCause();
+                            }
+                        }
+                    }
+                });
+    }
+
+    private void closeQuietly(PooledConnection pooled) {
+        open.decrementAndGet();
+        try {
+            pooled.connection().close();
+        } catch (SQLException ignored) {
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package dataaccess;
 
+import chess.ChessMove;
 import model.*;
 
 import java.util.Collection;
+import java.util.List;
 
 public interface DataAccess {
     void clear() throws DataAccessException;
@@ -19,6 +21,19 @@ public interface DataAccess {
 
     GameData updateGame(GameData game) throws DataAccessException;
 
+    /**
+     * Records a move that has been made on game. The game's state and description are saved with
+     * the move, so this can be used in place of {@link #updateGame(GameData)} after a move.
+     *
+     * @param game the game after the move
+     */
+    GameData addMove(GameData game, ChessMove move) throws DataAccessException;
+
+    /**
+     * @return every move recorded with {@link #addMove(GameData, ChessMove)} for the game, in the order they were made
+     */
+    List<ChessMove> listMoves(int gameID) throws DataAccessException;
+
     AuthData createAuth(String username) throws DataAccessException;
 
     AuthData getAuth(String authToken) throws DataAccessException;
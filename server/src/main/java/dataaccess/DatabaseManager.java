@@ -8,6 +8,7 @@ public class DatabaseManager {
     private static String dbUsername;
     private static String dbPassword;
     private static String connectionUrl;
+    private static ConnectionPool pool;
 
     /*
      * Load the database information for the db.properties file.
@@ -30,10 +31,10 @@ public class DatabaseManager {
     }
 
     /**
-     * Create a connection to the database and sets the catalog based upon the
-     * properties specified in db.properties. Connections to the database should
-     * be short-lived, and you must close the connection when you are done with it.
-     * The easiest way to do that is with a try-with-resource block.
+     * Gets a connection to the database, with the catalog set, from the connection pool.
+     * Connections to the database should be short-lived, and you must close the
+     * connection when you are done with it so that it goes back to the pool. The
+     * easiest way to do that is with a try-with-resource block.
      * <br/>
      * <code>
      * try (var conn = DatabaseManager.getConnection()) {
@@ -44,14 +45,19 @@ public class DatabaseManager {
     static Connection getConnection() throws DataAccessException {
         try {
             //do not wrap the following line with a try-with-resources
-            var conn = DriverManager.getConnection(connectionUrl, dbUsername, dbPassword);
-            conn.setCatalog(databaseName);
-            return conn;
+            return pool.getConnection();
         } catch (SQLException ex) {
             throw new DataAccessException("failed to get connection", ex);
         }
     }
 
+    /**
+     * @return the connection pool's current counters
+     */
+    public static PoolStats poolStats() {
+        return pool.stats();
+    }
+
     static String dbName() {
         return databaseName;
     }
@@ -77,5 +83,33 @@ public class DatabaseManager {
         var host = props.getProperty("db.host");
         var port = Integer.parseInt(props.getProperty("db.port"));
         connectionUrl = String.format("jdbc:mysql://%s:%d", host, port);
+
+        // Connections to the previous database must not be handed out any more.
+        if (pool != null) {
+            pool.close();
+        }
+        pool = new ConnectionPool(connectionUrl, driverProperties(props), databaseName, ConnectionPool.Settings.fromProperties(props));
+    }
+
+    /**
+     * The properties given to the MySQL driver for pooled connections. Statements are prepared on
+     * the server, so it parses and plans each one once, and the driver keeps them cached per
+     * connection, so that the same SQL string is only prepared once per connection. Any
+     * {@code db.driver.<name>} entry in db.properties sets or overrides driver property name.
+     */
+    private static Properties driverProperties(Properties props) {
+        var driverProps = new Properties();
+        driverProps.setProperty("user", dbUsername);
+        driverProps.setProperty("password", dbPassword);
+        driverProps.setProperty("useServerPrepStmts", "true");
+        driverProps.setProperty("cachePrepStmts", "true");
+        driverProps.setProperty("prepStmtCacheSize", "250");
+        driverProps.setProperty("prepStmtCacheSqlLimit", "2048");
+        for (var name : props.stringPropertyNames()) {
+            if (name.startsWith("db.driver.")) {
+                driverProps.setProperty(name.substring("db.driver.".length()), props.getProperty(name));
+            }
+        }
+        return driverProps;
     }
 }
@@ -0,0 +1,246 @@
+package dataaccess;
+
+import chess.ChessGame;
+import chess.ChessMove;
+import model.AuthData;
+import model.GameData;
+import model.UserData;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the games being played in memory in front of another DataAccess, so that reading a
+ * game doesn't go to the store.
+ * <p>
+ * A game is read from the store the first time it is needed and then served from memory.
+ * Updates and moves are written to the store before they return, and the in-memory game is
+ * only changed once the store has accepted them, so a change is never reported as made and
+ * then lost. Games that haven't been used for {@code idleTimeoutMs} are dropped from memory.
+ * <p>
+ * Versions are checked against the in-memory game, so a change based on an out of date copy is
+ * turned away at once with status code 409. The store checks the version again, which catches
+ * a change made by another server. When it turns a change away, the in-memory game is dropped
+ * too, so the caller's retry reads the game from the store again. Callers always get their own
+ * copy of a game, so changing it doesn't change the one in memory.
+ * <p>
+ * Changes are not queued and written in batches. The store is the only place the version is
+ * checked against other servers, so a queued change it turned away would be a move the players
+ * had already seen accepted, with no way to take it back. Each move therefore still costs one
+ * transaction; what the cache saves is the read and replay of the game before it.
+ * <p>
+ * Users and auth tokens go straight to the store.
+ */
+public class GameCacheDataAccess implements DataAccess, AutoCloseable {
+    private final DataAccess store;
+    private final long idleTimeoutMs;
+
+    private final Map<Integer, Entry> games = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService evictor;
+
+    private static class Entry {
+        volatile GameData game;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        // Guarded by the entry itself, which is held while a change is written to the store.
+        boolean removed;
+
+        Entry(GameData game) {
+            this.game = game;
+        }
+    }
+
+    /**
+     * @param idleTimeoutMs how long an unused game stays in memory
+     */
+    public GameCacheDataAccess(DataAccess store, long idleTimeoutMs) {
+        this.store = store;
+        this.idleTimeoutMs = idleTimeoutMs;
+
+        evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            var thread = new Thread(r, "game-cache-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictor.scheduleWithFixedDelay(this::evictIdleGames, idleTimeoutMs, idleTimeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void clear() throws DataAccessException {
+        for (var entry : games.values()) {
+            synchronized (entry) {
+                entry.removed = true;
+            }
+        }
+        games.clear();
+        store.clear();
+    }
+
+    @Override
+    public UserData createUser(UserData user) throws DataAccessException {
+        return store.createUser(user);
+    }
+
+    @Override
+    public UserData getUser(String username) throws DataAccessException {
+        return store.getUser(username);
+    }
+
+    @Override
+    public GameData createGame(String gameName) throws DataAccessException {
+        var gameData = store.createGame(gameName);
+        if (gameData != null) {
+            games.put(gameData.gameID(), new Entry(gameData));
+            return copy(gameData);
+        }
+        return null;
+    }
+
+    @Override
+    public GameData getGame(int gameID) throws DataAccessException {
+        var entry = load(gameID);
+        return entry != null ? copy(entry.game) : null;
+    }
+
+    /**
+     * Lists the games in the store, with the in-memory version of any game that has one.
+     */
+    @Override
+    public Collection<GameData> listGames() throws DataAccessException {
+        var result = new ArrayList<GameData>();
+        for (var gameData : store.listGames()) {
+            var entry = games.get(gameData.gameID());
+            result.add(entry != null ? copy(entry.game) : gameData);
+        }
+        return result;
+    }
+
+    @Override
+    public GameData updateGame(GameData game) throws DataAccessException {
+        return write(game, null);
+    }
+
+    @Override
+    public GameData addMove(GameData game, ChessMove move) throws DataAccessException {
+        return write(game, move);
+    }
+
+    @Override
+    public List<ChessMove> listMoves(int gameID) throws DataAccessException {
+        return store.listMoves(gameID);
+    }
+
+    @Override
+    public AuthData createAuth(String username) throws DataAccessException {
+        return store.createAuth(username);
+    }
+
+    @Override
+    public AuthData getAuth(String authToken) throws DataAccessException {
+        return store.getAuth(authToken);
+    }
+
+    @Override
+    public void deleteAuth(String authToken) throws DataAccessException {
+        store.deleteAuth(authToken);
+    }
+
+    /**
+     * Stops dropping idle games. Every change is already in the store, so there is nothing to write.
+     */
+    @Override
+    public void close() {
+        evictor.shutdown();
+    }
+
+    @Override
+    public String toString() {
+        return "Cached " + store;
+    }
+
+    private Entry load(int gameID) throws DataAccessException {
+        var entry = games.get(gameID);
+        if (entry == null) {
+            var gameData = store.getGame(gameID);
+            if (gameData == null) {
+                return null;
+            }
+            entry = games.computeIfAbsent(gameID, id -> new Entry(gameData));
+        }
+        entry.lastUsed = System.currentTimeMillis();
+        return entry;
+    }
+
+    /**
+     * Writes the change to the store and then to memory. If the store fails, memory is left as
+     * it was, or dropped if the store's copy of the game has moved on.
+     */
+    private GameData write(GameData game, ChessMove move) throws DataAccessException {
+        if (game.gameID() <= 0 || game.game() == null || game.state() == null) {
+            throw new DataAccessException("Invalid game data");
+        }
+
+        // The caller goes on changing the game it holds, so memory and the store get their own copy.
+        var snapshot = copy(game);
+
+        while (true) {
+            var entry = load(game.gameID());
+            if (entry == null) {
+                throw new DataAccessException("Unknown game");
+            }
+            synchronized (entry) {
+                // The entry may have been dropped from memory since it was looked up.
+                if (entry.removed) {
+                    continue;
+                }
+                if (entry.game.version() != game.version()) {
+                    throw staleGame(game);
+                }
+                try {
+                    if (move != null) {
+                        store.addMove(snapshot, move);
+                    } else {
+                        store.updateGame(snapshot);
+                    }
+                } catch (DataAccessException ex) {
+                    if (ex.statusCode() == 409) {
+                        entry.removed = true;
+                        games.remove(game.gameID(), entry);
+                    }
+                    throw ex;
+                }
+                entry.game = snapshot.setVersion(game.version() + 1);
+                return game.setVersion(game.version() + 1);
+            }
+        }
+    }
+
+    private static GameData copy(GameData game) {
+        return new GameData(game.gameID(), game.whiteUsername(), game.blackUsername(), game.gameName(),
+                new ChessGame(game.game()), game.state(), game.description(), game.version());
+    }
+
+    private static DataAccessException staleGame(GameData game) {
+        return new DataAccessException(409, String.format("Game %d has changed since version %d was read", game.gameID(),
+                game.version()), null);
+    }
+
+    private void evictIdleGames() {
+        var now = System.currentTimeMillis();
+        for (var mapEntry : games.entrySet()) {
+            var entry = mapEntry.getValue();
+            synchronized (entry) {
+                if (now - entry.lastUsed > idleTimeoutMs) {
+                    entry.removed = true;
+                    games.remove(mapEntry.getKey(), entry);
+                }
+            }
+        }
+    }
+}
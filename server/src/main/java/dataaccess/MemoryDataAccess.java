@@ -1,6 +1,7 @@
 package dataaccess;
 
 import chess.ChessGame;
+import chess.ChessMove;
 import model.*;
 
 import java.util.*;
@@ -11,12 +12,14 @@ public class MemoryDataAccess implements DataAccess {
     final private Map<String, UserData> users = new HashMap<>();
     final private Map<Integer, GameData> games = new HashMap<>();
     final private Map<String, AuthData> auths = new HashMap<>();
+    final private Map<Integer, List<ChessMove>> moves = new HashMap<>();
 
     @Override
     public void clear() {
         users.clear();
         games.clear();
         auths.clear();
+        moves.clear();
     }
 
     @Override
@@ -60,14 +63,32 @@ public class MemoryDataAccess implements DataAccess {
     }
 
     @Override
-    public GameData updateGame(GameData game) throws DataAccessException {
+    public synchronized GameData updateGame(GameData game) throws DataAccessException {
         if (game.gameID() > 0 && game.game() != null && game.state() != null) {
-            games.put(game.gameID(), game);
-            return game;
+            var stored = games.get(game.gameID());
+            if (stored == null || stored.version() != game.version()) {
+                throw new DataAccessException(409, String.format("Game %d has changed since version %d was read",
+                        game.gameID(), game.version()), null);
+            }
+            var updated = game.setVersion(game.version() + 1);
+            games.put(game.gameID(), updated);
+            return updated;
         }
         throw new DataAccessException("Invalid game data");
     }
 
+    @Override
+    public synchronized GameData addMove(GameData game, ChessMove move) throws DataAccessException {
+        var updated = updateGame(game);
+        moves.computeIfAbsent(game.gameID(), id -> new ArrayList<>()).add(move);
+        return updated;
+    }
+
+    @Override
+    public List<ChessMove> listMoves(int gameID) {
+        return new ArrayList<>(moves.getOrDefault(gameID, List.of()));
+    }
+
     @Override
     public AuthData createAuth(String username) {
         var auth = new AuthData(AuthData.generateToken(), username);
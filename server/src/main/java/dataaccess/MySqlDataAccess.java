@@ -1,21 +1,45 @@
 package dataaccess;
 
+import chess.Bitboards;
 import chess.ChessGame;
+import chess.ChessMove;
+import chess.InvalidMoveException;
+import chess.PackedMove;
 import model.AuthData;
 import model.GameData;
 import model.UserData;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.SQLIntegrityConstraintViolationException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 
 import static java.sql.Statement.RETURN_GENERATED_KEYS;
 import static java.sql.Types.NULL;
 
 public class MySqlDataAccess implements DataAccess {
 
+    /**
+     * Moves are appended to the game_move table, numbered from 1 in the order they were logged,
+     * and the full game is only rewritten every this many moves and when the game ends. The
+     * game's moveCount column holds the number of the last move the stored game includes, and
+     * reading a game replays the logged moves after it.
+     */
+    private static final int SNAPSHOT_INTERVAL = 20;
+
+    /**
+     * Writes a game only if it is still at the version it was read at. The game written includes
+     * every move logged so far, so moveCount moves up to the last one. Parameters are the game's
+     * columns, the gameID for the move count, the new version, the gameID and the version read.
+     */
+    private static final String UPDATE_GAME = "UPDATE `game` set gameName=?, whitePlayerName=?, blackPlayerName=?, game=?, moveCount=(SELECT COALESCE(MAX(moveNumber), 0) FROM `game_move` WHERE gameID=?), state=?, description=?, version=? WHERE gameID=? AND version=?";
+
     public MySqlDataAccess() throws DataAccessException {
         configureDatabase();
     }
@@ -23,6 +47,7 @@ public class MySqlDataAccess implements DataAccess {
     public void clear() throws DataAccessException {
         executeCommand("DELETE FROM `authentication`");
         executeCommand("DELETE FROM `user`");
+        executeCommand("DELETE FROM `game_move`");
         executeCommand("DELETE FROM `game`");
     }
 
@@ -61,11 +86,11 @@ public class MySqlDataAccess implements DataAccess {
             game.board.resetBoard();
             var state = GameData.State.UNDECIDED;
             var query = "INSERT INTO `game` (gameName, whitePlayerName, blackPlayerName, game, state, description) VALUES (?, ?, ?, ?, ?, ?)";
-            var id = executeUpdate(query,
+            var id = executeInsert(query,
                     gameName,
                     null,
                     null,
-                    game.toString(),
+                    game.toBytes(),
                     state.toString(),
                     "Game created");
             if (id != 0) {
@@ -78,12 +103,12 @@ public class MySqlDataAccess implements DataAccess {
 
     public GameData getGame(int gameID) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
-            var query = "SELECT gameID, gameName, whitePlayerName, blackPlayerName, game, state, description FROM `game` WHERE gameID=?";
+            var query = "SELECT gameID, gameName, whitePlayerName, blackPlayerName, game, moveCount, state, description, version FROM `game` WHERE gameID=?";
             try (var preparedStatement = conn.prepareStatement(query)) {
                 preparedStatement.setInt(1, gameID);
                 try (var rs = preparedStatement.executeQuery()) {
                     if (rs.next()) {
-                        return readGameData(rs);
+                        return replayMoves(conn, readGameData(rs), rs.getInt("moveCount"));
                     }
                 }
             }
@@ -95,14 +120,32 @@ public class MySqlDataAccess implements DataAccess {
     }
 
     public Collection<GameData> listGames() throws DataAccessException {
-        var result = new ArrayList<GameData>();
+        var result = new LinkedHashMap<Integer, GameData>();
         try (var conn = DatabaseManager.getConnection()) {
-            var query = "SELECT gameID, gameName, whitePlayerName, blackPlayerName, game, state, description FROM `game` ORDER BY state DESC";
+            var query = "SELECT gameID, gameName, whitePlayerName, blackPlayerName, game, state, description, version FROM `game` ORDER BY state DESC";
             try (var preparedStatement = conn.prepareStatement(query)) {
                 try (var rs = preparedStatement.executeQuery()) {
                     while (rs.next()) {
                         var gameData = readGameData(rs);
-                        result.add(gameData);
+                        result.put(gameData.gameID(), gameData);
+                    }
+                }
+            }
+
+            // Bring every game up to date with one query rather than one per game.
+            var movesQuery = """
+                    SELECT m.gameID, m.move, m.state, m.description FROM `game_move` m
+                    JOIN `game` g ON m.gameID = g.gameID
+                    WHERE m.moveNumber > g.moveCount
+                    ORDER BY m.gameID, m.moveNumber
+                    """;
+            try (var preparedStatement = conn.prepareStatement(movesQuery)) {
+                try (var rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        var gameData = result.get(rs.getInt("gameID"));
+                        if (gameData != null) {
+                            result.put(gameData.gameID(), applyMove(gameData, rs));
+                        }
                     }
                 }
             }
@@ -110,19 +153,83 @@ public class MySqlDataAccess implements DataAccess {
             throw new DataAccessException(String.format("Unable to read data: %s", e.getMessage()));
         }
 
-        return result;
+        return new ArrayList<>(result.values());
     }
 
+    /**
+     * Writes the game if nobody has changed it since it was read.
+     *
+     * @return the game with its new version
+     * @throws DataAccessException with status code 409 if the stored game has a different version, or is gone
+     */
     public GameData updateGame(GameData gameData) throws DataAccessException {
-        executeUpdate("UPDATE `game` set gameName=?, whitePlayerName=?, blackPlayerName=?, game=?, state=?, description=? WHERE gameID=?",
-                gameData.gameName(),
-                gameData.whiteUsername(),
-                gameData.blackUsername(),
-                gameData.game().toString(),
-                gameData.state().toString(),
-                gameData.description(),
-                gameData.gameID());
-        return gameData;
+        if (executeUpdate(UPDATE_GAME, gameColumns(gameData)) == 0) {
+            throw staleGame(gameData);
+        }
+        return gameData.setVersion(gameData.version() + 1);
+    }
+
+    /**
+     * Logs the move, and moves the game to its next version, in one transaction. The version is
+     * claimed first, so a move made on an out of date copy of the game is never logged, and the
+     * game's row stays locked until the move has its number.
+     *
+     * @throws DataAccessException with status code 409 if the stored game has a different version, or is gone
+     */
+    public GameData addMove(GameData gameData, ChessMove move) throws DataAccessException {
+        var packedMove = PackedMove.encode(Bitboards.square(move.getStartPosition()), Bitboards.square(move.getEndPosition()),
+                move.getPromotionPiece(), PackedMove.NORMAL);
+        try (var conn = DatabaseManager.getConnection()) {
+            conn.setAutoCommit(false);
+            var updated = executeUpdate(conn, "UPDATE `game` set state=?, description=?, version=? WHERE gameID=? AND version=?",
+                    gameData.state().toString(),
+                    gameData.description(),
+                    gameData.version() + 1,
+                    gameData.gameID(),
+                    gameData.version());
+            if (updated == 0) {
+                conn.rollback();
+                throw staleGame(gameData);
+            }
+
+            var moveNumber = lastMoveNumber(conn, gameData.gameID()) + 1;
+            executeUpdate(conn, "INSERT INTO `game_move` (gameID, moveNumber, move, state, description) VALUES (?, ?, ?, ?, ?)",
+                    gameData.gameID(),
+                    moveNumber,
+                    packedMove,
+                    gameData.state().toString(),
+                    gameData.description());
+            if (gameData.isGameOver() || moveNumber % SNAPSHOT_INTERVAL == 0) {
+                executeUpdate(conn, "UPDATE `game` set game=?, moveCount=? WHERE gameID=?",
+                        gameData.game().toBytes(),
+                        moveNumber,
+                        gameData.gameID());
+            }
+            conn.commit();
+        } catch (SQLIntegrityConstraintViolationException ex) {
+            throw new DataAccessException(403, ex.getMessage(), ex);
+        } catch (SQLException ex) {
+            throw new DataAccessException(String.format("addMove error: %s", ex.getMessage()), ex);
+        }
+        return gameData.setVersion(gameData.version() + 1);
+    }
+
+    public List<ChessMove> listMoves(int gameID) throws DataAccessException {
+        var result = new ArrayList<ChessMove>();
+        try (var conn = DatabaseManager.getConnection()) {
+            try (var preparedStatement = conn.prepareStatement("SELECT move FROM `game_move` WHERE gameID=? ORDER BY moveNumber")) {
+                preparedStatement.setInt(1, gameID);
+                try (var rs = preparedStatement.executeQuery()) {
+                    while (rs.next()) {
+                        result.add(PackedMove.toChessMove(rs.getInt("move")));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            throw new DataAccessException(String.format("Unable to read data: %s", e.getMessage()));
+        }
+
+        return result;
     }
 
     public AuthData createAuth(String username) throws DataAccessException {
@@ -154,16 +261,70 @@ public class MySqlDataAccess implements DataAccess {
     }
 
     private GameData readGameData(ResultSet rs) throws SQLException {
-        var gs = rs.getString("game");
+        var gs = rs.getBytes("game");
         var gameID = rs.getInt("gameID");
         var gameName = rs.getString("gameName");
         var whitePlayerName = rs.getString("whitePlayerName");
         var blackPlayerName = rs.getString("blackPlayerName");
-        var game = chess.ChessGame.fromString(gs);
+        var game = chess.ChessGame.fromBytes(gs);
         var state = GameData.State.valueOf(rs.getString("state"));
         var description = rs.getString("description");
+        var version = rs.getInt("version");
+
+        return new GameData(gameID, whitePlayerName, blackPlayerName, gameName, game, state, description, version);
+    }
+
+    private Object[] gameColumns(GameData gameData) {
+        return new Object[]{
+                gameData.gameName(),
+                gameData.whiteUsername(),
+                gameData.blackUsername(),
+                gameData.game().toBytes(),
+                gameData.gameID(),
+                gameData.state().toString(),
+                gameData.description(),
+                gameData.version() + 1,
+                gameData.gameID(),
+                gameData.version()};
+    }
+
+    private DataAccessException staleGame(GameData gameData) {
+        return new DataAccessException(409, String.format("Game %d has changed since version %d was read", gameData.gameID(),
+                gameData.version()), null);
+    }
 
-        return new GameData(gameID, whitePlayerName, blackPlayerName, gameName, game, state, description);
+    /**
+     * Replays the moves logged since the game was last written in full.
+     *
+     * @param moveCount the game's moveCount column, the last move the stored game includes
+     */
+    private GameData replayMoves(Connection conn, GameData gameData, int moveCount) throws SQLException, InvalidMoveException {
+        var query = "SELECT move, state, description FROM `game_move` WHERE gameID=? AND moveNumber>? ORDER BY moveNumber";
+        try (var preparedStatement = conn.prepareStatement(query)) {
+            preparedStatement.setInt(1, gameData.gameID());
+            preparedStatement.setInt(2, moveCount);
+            try (var rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    gameData = applyMove(gameData, rs);
+                }
+            }
+        }
+        return gameData;
+    }
+
+    private int lastMoveNumber(Connection conn, int gameID) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement("SELECT COALESCE(MAX(moveNumber), 0) FROM `game_move` WHERE gameID=?")) {
+            preparedStatement.setInt(1, gameID);
+            try (var rs = preparedStatement.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        }
+    }
+
+    private GameData applyMove(GameData gameData, ResultSet rs) throws SQLException, InvalidMoveException {
+        gameData.game().makeMove(PackedMove.toChessMove(rs.getInt("move")));
+        return gameData.setState(GameData.State.valueOf(rs.getString("state")), rs.getString("description"));
     }
 
     private final String[] createStatements = {
@@ -180,13 +341,26 @@ public class MySqlDataAccess implements DataAccess {
               `gameName` varchar(45) DEFAULT NULL,
               `whitePlayerName` varchar(100) DEFAULT NULL,
               `blackPlayerName` varchar(100) DEFAULT NULL,
-              `game` longtext NOT NULL,
+              `game` longblob NOT NULL,
+              `moveCount` int NOT NULL DEFAULT 0,
+              `version` int NOT NULL DEFAULT 0,
               `state` varchar(45) DEFAULT NULL,
               `description` varchar(256) DEFAULT NULL,
               PRIMARY KEY (`gameID`)
             ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
             """,
             """
+            CREATE TABLE IF NOT EXISTS `game_move` (
+              `gameID` int NOT NULL,
+              `moveNumber` int NOT NULL,
+              `move` smallint NOT NULL,
+              `state` varchar(45) NOT NULL,
+              `description` varchar(256) DEFAULT NULL,
+              `created` timestamp NOT NULL DEFAULT CURRENT_TIMESTAMP,
+              PRIMARY KEY (`gameID`, `moveNumber`)
+            ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci
+            """,
+            """
             CREATE TABLE IF NOT EXISTS `user` (
               `username` varchar(128) NOT NULL,
               `password` varchar(128) NOT NULL,
@@ -206,12 +380,50 @@ public class MySqlDataAccess implements DataAccess {
                         preparedStatement.executeUpdate();
                     }
                 }
+                migrateGameTable(conn);
             }
         } catch (SQLException e) {
             throw new DataAccessException(String.format("Unable to configure database: %s", e.getMessage()));
         }
     }
 
+    /**
+     * Brings a game table created by an earlier version up to date.
+     * <p>
+     * Games used to be stored as JSON in a longtext column. Changing the column to a blob keeps
+     * the JSON bytes, which ChessGame.fromBytes still reads, and each game is written in the
+     * binary form the next time it is updated. Tables from before the game_move table also
+     * need the moveCount column, which is 0 for games that have no logged moves, and older tables
+     * the version column.
+     */
+    private void migrateGameTable(Connection conn) throws SQLException {
+        var query = "SELECT COLUMN_NAME, DATA_TYPE FROM information_schema.COLUMNS WHERE TABLE_SCHEMA=? AND TABLE_NAME='game'";
+        var columns = new HashMap<String, String>();
+        try (var preparedStatement = conn.prepareStatement(query)) {
+            preparedStatement.setString(1, DatabaseManager.dbName());
+            try (var rs = preparedStatement.executeQuery()) {
+                while (rs.next()) {
+                    columns.put(rs.getString(1), rs.getString(2));
+                }
+            }
+        }
+        if (columns.getOrDefault("game", "").endsWith("text")) {
+            try (var alter = conn.prepareStatement("ALTER TABLE `game` MODIFY `game` longblob NOT NULL")) {
+                alter.executeUpdate();
+            }
+        }
+        if (!columns.containsKey("moveCount")) {
+            try (var alter = conn.prepareStatement("ALTER TABLE `game` ADD COLUMN `moveCount` int NOT NULL DEFAULT 0 AFTER `game`")) {
+                alter.executeUpdate();
+            }
+        }
+        if (!columns.containsKey("version")) {
+            try (var alter = conn.prepareStatement("ALTER TABLE `game` ADD COLUMN `version` int NOT NULL DEFAULT 0 AFTER `moveCount`")) {
+                alter.executeUpdate();
+            }
+        }
+    }
+
     private void executeCommand(String statement) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection()) {
             try (var preparedStatement = conn.prepareStatement(statement)) {
@@ -222,30 +434,64 @@ public class MySqlDataAccess implements DataAccess {
         }
     }
 
+    /**
+     * Runs an UPDATE or DELETE, or an INSERT into a table without an auto-increment key.
+     *
+     * @return the number of rows changed
+     */
     private int executeUpdate(String statement, Object... params) throws DataAccessException {
+        try (var conn = DatabaseManager.getConnection()) {
+            return executeUpdate(conn, statement, params);
+        } catch (SQLIntegrityConstraintViolationException ex) {
+            throw new DataAccessException(403, ex.getMessage(), ex);
+        } catch (SQLException ex) {
+            throw new DataAccessException(String.format("executeUpdate error: %s, %s", statement, ex.getMessage()), ex);
+        }
+    }
+
+    private int executeUpdate(Connection conn, String statement, Object... params) throws SQLException {
+        try (var preparedStatement = conn.prepareStatement(statement)) {
+            setParameters(preparedStatement, params);
+            return preparedStatement.executeUpdate();
+        }
+    }
+
+    /**
+     * Runs an INSERT into a table with an auto-increment key. Only inserts ask the driver for
+     * generated keys, since fetching them costs an extra round of work for every statement.
+     *
+     * @return the generated key, or 0 if there wasn't one
+     */
+    private int executeInsert(String statement, Object... params) throws DataAccessException {
         try (var conn = DatabaseManager.getConnection(); var preparedStatement = conn.prepareStatement(statement, RETURN_GENERATED_KEYS)) {
-            for (var i = 0; i < params.length; i++) {
-                var param = params[i];
-                switch (param) {
-                    case String s -> preparedStatement.setString(i + 1, s);
-                    case Integer x -> preparedStatement.setInt(i + 1, x);
-                    case null -> preparedStatement.setNull(i + 1, NULL);
-                    default -> {
-                    }
-                }
-            }
+            setParameters(preparedStatement, params);
             preparedStatement.executeUpdate();
 
-            var rs = preparedStatement.getGeneratedKeys();
-            if (rs.next()) {
-                return rs.getInt(1);
+            try (var rs = preparedStatement.getGeneratedKeys()) {
+                if (rs.next()) {
+                    return rs.getInt(1);
+                }
             }
 
             return 0;
         } catch (SQLIntegrityConstraintViolationException ex) {
             throw new DataAccessException(403, ex.getMessage(), ex);
         } catch (SQLException ex) {
-            throw new DataAccessException(String.format("executeUpdate error: %s, %s", statement, ex.getMessage()), ex);
+            throw new DataAccessException(String.format("executeInsert error: %s, %s", statement, ex.getMessage()), ex);
+        }
+    }
+
+    private void setParameters(PreparedStatement preparedStatement, Object... params) throws SQLException {
+        for (var i = 0; i < params.length; i++) {
+            var param = params[i];
+            switch (param) {
+                case String s -> preparedStatement.setString(i + 1, s);
+                case Integer x -> preparedStatement.setInt(i + 1, x);
+                case byte[] b -> preparedStatement.setBytes(i + 1, b);
+                case null -> preparedStatement.setNull(i + 1, NULL);
+                default -> {
+                }
+            }
         }
     }
 
@@ -0,0 +1,15 @@
+package dataaccess;
+
+/**
+ * A snapshot of the database connection pool's counters.
+ *
+ * @param open         connections currently open, idle, in use or being opened
+ * @param idle         open connections waiting to be borrowed
+ * @param active       connections currently borrowed
+ * @param created      connections opened since the pool was created
+ * @param borrows      connections handed out since the pool was created
+ * @param waitTimeouts callers that gave up waiting for a connection
+ * @param leaks        connections reported as held longer than the leak threshold
+ */
+public record PoolStats(int open, int idle, int active, long created, long borrows, long waitTimeouts, long leaks) {
+}
@@ -1,14 +1,151 @@
 package server;
 
 import io.javalin.websocket.WsContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import websocket.messages.*;
 
-public record Connection(int gameID, WsContext ctx) {
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A websocket session connected to a game, with its own queue of messages waiting to go out.
+ * <p>
+ * Sending only queues the message; a virtual thread writes the queue to the socket, so a client
+ * that reads slowly holds up nobody but itself. Only the latest board matters, so a LOAD_GAME
+ * replaces the board of any LOAD_GAME still waiting, keeping its place in the queue. If the queue still grows past {@link #MAX_QUEUED} the
+ * client isn't keeping up at all, and it is disconnected.
+ */
+public class Connection {
+    private static final Logger LOG = LoggerFactory.getLogger(Connection.class);
+
+    static final int MAX_QUEUED = 256;
+
+    private final int gameID;
+    private final WsContext ctx;
+    private final Executor sender;
+    private final OutboundCounters counters;
+
+    // Guarded by the connection itself.
+    private final ArrayDeque<Outgoing> queue = new ArrayDeque<>();
+    private Outgoing waitingLoad;
+    private boolean sending;
+    private boolean dropped;
+
+    private static class Outgoing {
+        // Guarded by the connection, since a waiting LOAD_GAME is given the newer board.
+        String payload;
+
+        Outgoing(String payload) {
+            this.payload = payload;
+        }
+    }
+
+    Connection(int gameID, WsContext ctx, Executor sender, OutboundCounters counters) {
+        this.gameID = gameID;
+        this.ctx = ctx;
+        this.sender = sender;
+        this.counters = counters;
+    }
+
+    public int gameID() {
+        return gameID;
+    }
+
+    public WsContext ctx() {
+        return ctx;
+    }
+
     public boolean isOpen() {
         return ctx.session.isOpen();
     }
 
     public void send(ServerMessage msg) {
-        ctx.send(msg.toString());
+        send(msg.getServerMessageType(), msg.toString());
+    }
+
+    /**
+     * Queues a message that has already been serialized, so that a broadcast only does it once.
+     */
+    public void send(ServerMessage.ServerMessageType type, String payload) {
+        synchronized (this) {
+            if (dropped) {
+                return;
+            }
+            var loadGame = type == ServerMessage.ServerMessageType.LOAD_GAME;
+            if (loadGame && waitingLoad != null) {
+                waitingLoad.payload = payload;
+                counters.coalesced();
+                return;
+            }
+            if (queue.size() < MAX_QUEUED) {
+                var outgoing = new Outgoing(payload);
+                queue.addLast(outgoing);
+                counters.queued(1);
+                if (loadGame) {
+                    waitingLoad = outgoing;
+                }
+                if (!sending) {
+                    startSending();
+                }
+                return;
+            }
+            drop();
+            counters.disconnected();
+        }
+        LOG.warn("Disconnecting session {}, {} messages behind", ctx.sessionId(), MAX_QUEUED);
+        ctx.closeSession(1008, "Too far behind");
+    }
+
+    /**
+     * @return the number of messages waiting to be sent
+     */
+    public synchronized int queued() {
+        return queue.size();
+    }
+
+    /**
+     * Hands the queue to a sender. Once the server has stopped its senders nothing more can go
+     * out, so the queue is dropped.
+     */
+    private void startSending() {
+        try {
+            sender.execute(this::drain);
+            sending = true;
+        } catch (RejectedExecutionException ex) {
+            drop();
+        }
+    }
+
+    private void drop() {
+        dropped = true;
+        counters.queued(-queue.size());
+        queue.clear();
+        waitingLoad = null;
+    }
+
+    private void drain() {
+        while (true) {
+            String payload;
+            synchronized (this) {
+                var next = queue.pollFirst();
+                if (next == null) {
+                    sending = false;
+                    return;
+                }
+                if (next == waitingLoad) {
+                    waitingLoad = null;
+                }
+                payload = next.payload;
+                counters.queued(-1);
+            }
+            try {
+                ctx.send(payload);
+                counters.sent();
+            } catch (RuntimeException ex) {
+                LOG.warn("Unable to send to session {}: {}", ctx.sessionId(), ex.getMessage());
+            }
+        }
     }
-}
\ No newline at end of file
+}
@@ -4,42 +4,129 @@ package server;
 import io.javalin.websocket.WsContext;
 import websocket.messages.ServerMessage;
 
-import java.util.ArrayList;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
-public class ConnectionManager {
-    public final ConcurrentHashMap<String, Connection> connections = new ConcurrentHashMap<>();
+/**
+ * Keeps track of which websocket sessions are connected to which game. Connections are kept by
+ * game, so a broadcast only visits the game's own players and observers, and by session, so a
+ * session can be removed without knowing its game. A connection found closed during a broadcast
+ * is removed then and there.
+ * <p>
+ * Messages are queued on each connection and sent by a virtual thread, see {@link Connection},
+ * so a broadcast doesn't wait for any client.
+ */
+public class ConnectionManager implements AutoCloseable {
+    /**
+     * The game of a session that hasn't connected to one, which is only ever sent errors.
+     */
+    private static final int NO_GAME = 0;
 
+    /**
+     * How long close waits for the messages already queued to go out.
+     */
+    private static final long CLOSE_TIMEOUT_MS = 5_000;
+
+    private final ConcurrentHashMap<Integer, Set<Connection>> games = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Connection> sessions = new ConcurrentHashMap<>();
+    private final ExecutorService sender = Executors.newVirtualThreadPerTaskExecutor();
+    private final OutboundCounters counters = new OutboundCounters();
+
+    /**
+     * Connects the session to the game, in place of any game it was connected to before.
+     */
     public void add(int gameID, WsContext ctx) {
-        connections.put(ctx.sessionId(), new Connection(gameID, ctx));
+        var connection = new Connection(gameID, ctx, sender, counters);
+        var previous = sessions.put(ctx.sessionId(), connection);
+        if (previous != null) {
+            removeFromGame(previous);
+        }
+        // Added inside compute so that it can't land in a set that removeFromGame is dropping.
+        games.compute(gameID, (id, connections) -> {
+            if (connections == null) {
+                connections = ConcurrentHashMap.newKeySet();
+            }
+            connections.add(connection);
+            return connections;
+        });
     }
 
     public void remove(WsContext ctx) {
-        connections.remove(ctx.sessionId());
+        var connection = sessions.remove(ctx.sessionId());
+        if (connection != null) {
+            removeFromGame(connection);
+        }
     }
 
     public void broadcast(int gameID, String excludeSessionID, ServerMessage msg) {
-        var removeList = new ArrayList<Connection>();
-        for (var c : connections.values()) {
-            if (c.isOpen()) {
-                if (c.gameID() == gameID && !c.ctx().sessionId().equals(excludeSessionID)) {
-                    c.send(msg);
-                }
-            } else {
-                removeList.add(c);
+        var connections = games.get(gameID);
+        if (connections == null) {
+            return;
+        }
+        // Every recipient gets the same JSON, so it is only serialized once.
+        var payload = msg.toString();
+        for (var c : connections) {
+            if (!c.isOpen()) {
+                // Clean up a connection that was left open.
+                sessions.remove(c.ctx().sessionId(), c);
+                removeFromGame(c);
+            } else if (!c.ctx().sessionId().equals(excludeSessionID)) {
+                c.send(msg.getServerMessageType(), payload);
             }
         }
+    }
+
+    /**
+     * Sends a message to one session, behind anything already queued for it. A session that
+     * hasn't connected to a game yet is given a queue of its own, so that it can't hold up the
+     * caller either; it is replaced when the session connects to a game and removed with it.
+     */
+    public void send(WsContext ctx, ServerMessage msg) {
+        sessions.computeIfAbsent(ctx.sessionId(), id -> new Connection(NO_GAME, ctx, sender, counters)).send(msg);
+    }
+
+    /**
+     * @return the outbound queues' current depth and counters
+     */
+    public OutboundStats stats() {
+        var maxQueued = 0;
+        for (var c : sessions.values()) {
+            maxQueued = Math.max(maxQueued, c.queued());
+        }
+        return counters.stats(sessions.size(), maxQueued);
+    }
 
-        // Clean up any connections that were left open.
-        for (var c : removeList) {
-            connections.remove(c.ctx().sessionId());
+    /**
+     * Stops the senders, once the messages already queued have gone out or the timeout has
+     * passed. Nothing sent after this goes out.
+     */
+    @Override
+    public void close() {
+        sender.shutdown();
+        try {
+            if (!sender.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                sender.shutdownNow();
+            }
+        } catch (InterruptedException ex) {
+            sender.shutdownNow();
+            Thread.currentThread().interrupt();
         }
     }
 
+    private void removeFromGame(Connection connection) {
+        games.computeIfPresent(connection.gameID(), (id, connections) -> {
+            connections.remove(connection);
+            return connections.isEmpty() ? null : connections;
+        });
+    }
+
     @Override
     public String toString() {
         var sb = new StringBuilder("[\n");
-        for (var c : connections.values()) {
+        for (var c : sessions.values()) {
             sb.append(String.format("  {'game':%d, 'session': %s}%n", c.gameID(), c.ctx().sessionId()));
         }
         sb.append("]");
@@ -10,18 +10,39 @@ import dataaccess.*;
 import static utils.StringUtils.*;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 public class EndpointManager {
     private final AdminService adminService;
     private final UserService userService;
     private final AuthService authService;
     private final GameService gameService;
+    private final GameActors gameActors = new GameActors();
+    private final Supplier<PoolStats> poolStats;
+    private WebsocketServer websocketServer;
+
+    /**
+     * At most this many auth tokens are cached, and each is trusted for at most this long
+     * before the database is read again.
+     */
+    private static final int AUTH_CACHE_SIZE = 10_000;
+    private static final long AUTH_CACHE_TTL_MS = 5 * 60 * 1000;
 
     public EndpointManager(DataAccess dataAccess) {
-        adminService = new AdminService(dataAccess);
+        this(dataAccess, null, Set.of());
+    }
+
+    /**
+     * @param poolStats reports the database connection pool's counters on /stats, or null if there is no pool
+     * @param admins    the usernames allowed to read /stats
+     */
+    public EndpointManager(DataAccess dataAccess, Supplier<PoolStats> poolStats, Set<String> admins) {
+        this.poolStats = poolStats;
+        var authCache = new AuthCache(AUTH_CACHE_SIZE, AUTH_CACHE_TTL_MS);
+        adminService = new AdminService(dataAccess, authCache, admins);
         userService = new UserService(dataAccess);
-        authService = new AuthService(dataAccess);
-        gameService = new GameService(dataAccess);
+        authService = new AuthService(dataAccess, authCache);
+        gameService = new GameService(dataAccess, authCache);
     }
 
     public void register(Javalin javalin) {
@@ -32,16 +53,43 @@ public class EndpointManager {
         javalin.post("/game", this::createGame);
         javalin.get("/game", this::listGames);
         javalin.put("/game", this::joinGame);
+        javalin.get("/game/{gameID}/moves", this::listMoves);
+        javalin.get("/stats", this::stats);
 
-        new WebsocketServer(javalin, gameService);
+        websocketServer = new WebsocketServer(javalin, gameService, gameActors);
     }
 
 
+    /**
+     * Turns away new game commands and waits for the queued ones to finish, and then for the
+     * messages they sent to go out.
+     */
+    public void close() {
+        gameActors.close();
+        if (websocketServer != null) {
+            websocketServer.close();
+        }
+    }
+
     private void clearDb(Context context) throws CodedException {
         adminService.clearApplication();
         context.json("{}");
     }
 
+    private void stats(Context context) throws CodedException {
+        String authToken = context.header("authorization");
+        adminService.authorize(authToken);
+
+        var response = new LinkedHashMap<String, Object>();
+        if (poolStats != null) {
+            response.put("database", poolStats.get());
+        }
+        if (websocketServer != null) {
+            response.put("websocket", websocketServer.stats());
+        }
+        context.json(new Gson().toJson(response));
+    }
+
     private void registerUser(Context context) throws CodedException {
         UserData userData = getBodyObject(context, UserData.class);
         if (isNullOrEmpty(userData.username()) || isNullOrEmpty(userData.email()) || isNullOrEmpty(userData.password())) {
@@ -96,6 +144,20 @@ public class EndpointManager {
     }
 
 
+    private void listMoves(Context context) throws CodedException {
+        String authToken = context.header("authorization");
+        int gameID;
+        try {
+            gameID = Integer.parseInt(context.pathParam("gameID"));
+        } catch (NumberFormatException ex) {
+            throw new CodedException(400, "bad request");
+        }
+
+        var response = Map.of("moves", gameService.listMoves(authToken, gameID));
+        context.json(new Gson().toJson(response));
+    }
+
+
     private void joinGame(Context context) throws CodedException {
         String authToken = context.header("authorization");
         JoinGameReq joinGameReq = getBodyObject(context, JoinGameReq.class);
@@ -103,7 +165,9 @@ public class EndpointManager {
             throw new CodedException(400, "bad request");
         }
 
-        GameData game = gameService.joinGame(authToken, joinGameReq.playerColor(), joinGameReq.gameID());
+        // Joining changes the game, so it waits its turn behind the game's websocket commands.
+        GameData game = gameActors.call(joinGameReq.gameID(),
+                () -> gameService.joinGame(authToken, joinGameReq.playerColor(), joinGameReq.gameID()));
         context.json(new Gson().toJson(game));
     }
 
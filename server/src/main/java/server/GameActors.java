@@ -0,0 +1,191 @@
+package server;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import service.CodedException;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Runs the commands for each game one at a time, in the order they were submitted, while
+ * commands for different games run in parallel.
+ * <p>
+ * Every command for a game reads the game, changes it and writes it back, so two commands for
+ * the same game running at once could lose one of the changes. Each game with commands waiting
+ * gets a mailbox, and a virtual thread works through it until it is empty. The mailbox is then
+ * dropped, so only games with something to do take up memory. A command that fails, even with
+ * an Error, doesn't hold up the commands queued behind it.
+ * <p>
+ * {@link #close()} turns away new commands and waits for the queued ones to finish, so that
+ * everything they change is handed to the data access before it is closed.
+ */
+public class GameActors implements AutoCloseable {
+    private static final Logger LOG = LoggerFactory.getLogger(GameActors.class);
+    private static final long CLOSE_TIMEOUT_MS = 10_000;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ConcurrentHashMap<Integer, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    // Commands are queued under the read lock; close sets closed under the write lock, so no
+    // command is still on its way into a mailbox when the executor is shut down.
+    private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    /**
+     * A command that runs on a game's mailbox.
+     */
+    public interface Command<T> {
+        T run() throws CodedException;
+    }
+
+    /**
+     * Queues a command for the game and returns without waiting for it. A command that throws
+     * is reported and the ones after it still run.
+     *
+     * @throws RejectedExecutionException if the actors have been closed
+     */
+    public void execute(int gameID, Runnable command) {
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new RejectedExecutionException("Server is shutting down");
+            }
+            mailboxes.compute(gameID, (id, mailbox) -> {
+                var idle = mailbox == null;
+                if (idle) {
+                    mailbox = new Mailbox(id);
+                }
+                mailbox.commands.add(command);
+                if (idle) {
+                    executor.execute(mailbox);
+                }
+                return mailbox;
+            });
+        } finally {
+            closeLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Queues a command for the game and waits for its result. This must not be called from a
+     * command that is running on the same game's mailbox, which would wait for itself.
+     */
+    public <T> T call(int gameID, Command<T> command) throws CodedException {
+        var result = new CompletableFuture<T>();
+        try {
+            execute(gameID, () -> {
+                try {
+                    result.complete(command.run());
+                } catch (CodedException | RuntimeException ex) {
+                    result.completeExceptionally(ex);
+                } catch (Error err) {
+                    result.completeExceptionally(err);
+                    throw err;
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            throw new CodedException(503, ex.getMessage(), ex);
+        }
+
+        try {
+            return result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CodedException(500, "Interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof CodedException coded) {
+                throw coded;
+            }
+            if (ex.getCause() instanceof Error err) {
+                throw err;
+            }
+            throw (RuntimeException) ex.getCause();
+        }
+    }
+
+    /**
+     * Turns away new commands and waits for the ones already queued to finish.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        // A mailbox that is already running works through everything queued on it before it ends.
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Commands for {} games were still running after {}ms", mailboxes.size(), CLOSE_TIMEOUT_MS);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private class Mailbox implements Runnable {
+        private final int gameID;
+
+        // Only changed inside mailboxes.compute, which locks the game's entry.
+        private final ArrayDeque<Runnable> commands = new ArrayDeque<>();
+        private Runnable next;
+
+        Mailbox(int gameID) {
+            this.gameID = gameID;
+        }
+
+        @Override
+        public void run() {
+            var drained = false;
+            try {
+                while (takeNext()) {
+                    try {
+                        next.run();
+                    } catch (RuntimeException ex) {
+                        LOG.warn("Command for game {} failed", gameID, ex);
+                    }
+                }
+                drained = true;
+            } finally {
+                if (!drained) {
+                    // An Error is ending this thread with the mailbox still registered.
+                    resume();
+                }
+            }
+        }
+
+        /**
+         * Carries on with the rest of the commands on a new thread, or on this one once the
+         * executor has been shut down, since close is still waiting for this task to end.
+         */
+        private void resume() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException ex) {
+                run();
+            }
+        }
+
+        /**
+         * Takes the next command, or drops the mailbox if there are none left.
+         */
+        private boolean takeNext() {
+            next = null;
+            mailboxes.computeIfPresent(gameID, (id, mailbox) -> {
+                next = commands.poll();
+                return next == null ? null : mailbox;
+            });
+            return next != null;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package server;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The outbound message counters shared by all of a ConnectionManager's connections.
+ */
+class OutboundCounters {
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong disconnected = new AtomicLong();
+
+    void queued(int delta) {
+        queued.addAndGet(delta);
+    }
+
+    void sent() {
+        sent.incrementAndGet();
+    }
+
+    void coalesced() {
+        coalesced.incrementAndGet();
+    }
+
+    void disconnected() {
+        disconnected.incrementAndGet();
+    }
+
+    OutboundStats stats(int connections, int maxQueued) {
+        return new OutboundStats(connections, queued.get(), maxQueued, sent.get(), coalesced.get(), disconnected.get());
+    }
+}
@@ -0,0 +1,14 @@
+package server;
+
+/**
+ * A snapshot of the websocket connections' outbound queues.
+ *
+ * @param connections  sessions connected to a game
+ * @param queued       messages waiting to be sent, over all connections
+ * @param maxQueued    the most messages waiting on any one connection
+ * @param sent         messages sent since the server started
+ * @param coalesced    LOAD_GAME messages replaced by a newer one before they were sent
+ * @param disconnected sessions closed for falling too far behind
+ */
+public record OutboundStats(int connections, int queued, int maxQueued, long sent, long coalesced, long disconnected) {
+}
@@ -1,25 +1,40 @@
 package server;
 
 import com.google.gson.Gson;
-import dataaccess.DataAccess;
 import dataaccess.DataAccessException;
+import dataaccess.DatabaseManager;
+import dataaccess.GameCacheDataAccess;
 import dataaccess.MySqlDataAccess;
 import io.javalin.Javalin;
 import io.javalin.http.Context;
 import service.CodedException;
 
+import java.util.HashSet;
 import java.util.Map;
+import java.util.Set;
 
 public class Server {
 
     private Javalin javalin;
+    private GameCacheDataAccess dataAccess;
+    private EndpointManager endpointManager;
+
+    /**
+     * Games that haven't been used for this long are no longer kept in memory.
+     */
+    private static final long GAME_IDLE_TIMEOUT_MS = 30 * 60 * 1000;
+
+    /**
+     * The users allowed to read /stats, comma separated. No one is unless it is set.
+     */
+    private static final String ADMINS_PROPERTY = "chess.admins";
 
     public Server() {
         try {
             javalin = Javalin.create(config -> config.staticFiles.add("web"));
 
-            DataAccess dataAccess = new MySqlDataAccess();
-            var endpointManager = new EndpointManager(dataAccess);
+            dataAccess = new GameCacheDataAccess(new MySqlDataAccess(), GAME_IDLE_TIMEOUT_MS);
+            endpointManager = new EndpointManager(dataAccess, DatabaseManager::poolStats, admins());
             endpointManager.register(javalin);
 
             javalin.exception(Exception.class, (e, context) -> exceptionHandler(new CodedException(500, e.getMessage()), context));
@@ -29,6 +44,16 @@ public class Server {
         }
     }
 
+    private static Set<String> admins() {
+        var admins = new HashSet<String>();
+        for (var username : System.getProperty(ADMINS_PROPERTY, "").split(",")) {
+            if (!username.isBlank()) {
+                admins.add(username.strip());
+            }
+        }
+        return admins;
+    }
+
     public int run(int desiredPort) {
         if (javalin != null) {
             javalin.start(desiredPort);
@@ -41,6 +66,13 @@ public class Server {
         if (javalin != null) {
             javalin.stop();
         }
+        // Commands still queued for a game finish before the data access they write to is closed.
+        if (endpointManager != null) {
+            endpointManager.close();
+        }
+        if (dataAccess != null) {
+            dataAccess.close();
+        }
     }
 
     private void exceptionHandler(CodedException e, Context context) {
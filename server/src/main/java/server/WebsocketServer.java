@@ -18,9 +18,14 @@ import websocket.messages.NotificationMessage;
 public class WebsocketServer {
     private final ConnectionManager connections = new ConnectionManager();
     private final GameService gameService;
+    private final GameActors gameActors;
 
-    public WebsocketServer(Javalin server, GameService gameService) {
+    /**
+     * @param gameActors runs each game's commands in order; share it with anything else that changes games
+     */
+    public WebsocketServer(Javalin server, GameService gameService, GameActors gameActors) {
         this.gameService = gameService;
+        this.gameActors = gameActors;
         server.ws("/ws", ws -> {
             ws.onConnect(this::websocketConnect);
             ws.onMessage(this::websocketMessage);
@@ -28,27 +33,58 @@ public class WebsocketServer {
         });
     }
 
+    /**
+     * @return the outbound message queues' depth and counters
+     */
+    public OutboundStats stats() {
+        return connections.stats();
+    }
+
+    /**
+     * Stops sending messages to the sessions. Call it once no more game commands can run.
+     */
+    public void close() {
+        connections.close();
+    }
+
     private void websocketConnect(WsConnectContext ctx) {
         ctx.enableAutomaticPings();
         System.out.println("Websocket connected");
     }
 
+    /**
+     * Queues the command on its game's mailbox, so that commands for a game run one at a time
+     * in the order they arrived, and the websocket thread is free for the next message.
+     */
     private void websocketMessage(WsMessageContext ctx) {
+        var message = ctx.message();
+        try {
+            var command = new Gson().fromJson(message, UserGameCommand.class);
+            gameActors.execute(command.getGameID(), () -> runCommand(ctx, command, message));
+        } catch (Exception ex) {
+            sendError(ctx, ex);
+        }
+    }
+
+    private void runCommand(WsContext ctx, UserGameCommand command, String message) {
         try {
-            var command = new Gson().fromJson(ctx.message(), UserGameCommand.class);
             switch (command.getCommandType()) {
                 case CONNECT -> gameConnect(ctx, command);
-                case MAKE_MOVE -> makeMove(ctx, new Gson().fromJson(ctx.message(), MakeMoveCommand.class));
+                case MAKE_MOVE -> makeMove(ctx, new Gson().fromJson(message, MakeMoveCommand.class));
                 case LEAVE -> leaveGame(ctx, command);
                 case RESIGN -> resignGame(command);
             }
         } catch (Exception ex) {
-            var error = new ErrorMessage(ex.getMessage());
-            ctx.send(error.toString());
+            sendError(ctx, ex);
         }
     }
 
+    private void sendError(WsContext ctx, Exception ex) {
+        connections.send(ctx, new ErrorMessage(ex.getMessage()));
+    }
+
     private void websocketClose(WsCloseContext ctx) {
+        connections.remove(ctx);
         System.out.println("Websocket closed");
     }
 
@@ -57,7 +93,7 @@ public class WebsocketServer {
         connections.add(command.getGameID(), ctx);
         var notification = new NotificationMessage(String.format("%s has joined the game as %s", info.username(), info.role()));
         connections.broadcast(command.getGameID(), ctx.sessionId(), notification);
-        ctx.send(new LoadMessage(info.gameData()).toString());
+        connections.send(ctx, new LoadMessage(info.gameData()));
     }
 
     private void makeMove(WsContext ctx, MakeMoveCommand command) throws CodedException {
@@ -3,14 +3,42 @@ package service;
 
 import dataaccess.*;
 
+import java.util.Set;
+
 public class AdminService extends Service {
+    private final Set<String> admins;
+
     public AdminService(DataAccess dataAccess) {
-        super(dataAccess);
+        this(dataAccess, AuthCache.NONE, Set.of());
+    }
+
+    public AdminService(DataAccess dataAccess, AuthCache authCache) {
+        this(dataAccess, authCache, Set.of());
+    }
+
+    /**
+     * @param admins the usernames allowed to see the server's statistics
+     */
+    public AdminService(DataAccess dataAccess, AuthCache authCache, Set<String> admins) {
+        super(dataAccess, authCache);
+        this.admins = Set.copyOf(admins);
+    }
+
+    /**
+     * Checks that the caller is logged in as one of the admins before they are shown the
+     * server's statistics.
+     */
+    public void authorize(String authToken) throws CodedException {
+        var authData = getAuthData(authToken);
+        if (!admins.contains(authData.username())) {
+            throw new CodedException(403, "Not an admin");
+        }
     }
 
     public void clearApplication() throws CodedException {
         try {
             dataAccess.clear();
+            authCache.clear();
         } catch (DataAccessException ex) {
             throw new CodedException(500, "Server error", ex);
         }
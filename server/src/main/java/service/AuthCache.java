@@ -0,0 +1,99 @@
+package service;
+
+import model.AuthData;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers recently used auth tokens so that checking a token, which every HTTP call and
+ * websocket command does, doesn't have to read the authentication table each time.
+ * <p>
+ * At most maxSize tokens are kept, and the least recently used one is dropped to make room.
+ * An entry is also dropped once it is older than the time to live, so a token removed from
+ * the database some other way is only honored for that long. Tokens removed through the
+ * services are invalidated straight away. Only tokens that exist are cached; an unknown token
+ * is looked up every time.
+ * <p>
+ * The services that check tokens and the services that remove them must share one cache, or
+ * a logout wouldn't reach the cache that still holds the token.
+ */
+public class AuthCache {
+    /**
+     * A cache that keeps nothing, for services that are used on their own.
+     */
+    public static final AuthCache NONE = new AuthCache(0, 0);
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * Counts invalidations, so that a lookup that read the database before a token was removed
+     * doesn't put it back afterward.
+     */
+    private long generation;
+
+    private record Entry(AuthData authData, long expires) {
+    }
+
+    /**
+     * @param maxSize the most tokens to keep
+     * @param ttlMillis how long a token is kept after it was read from the database
+     */
+    public AuthCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttlMillis * 1_000_000;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > AuthCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the cached auth data for the token, or null if it isn't cached or has expired
+     */
+    public synchronized AuthData get(String authToken) {
+        var entry = entries.get(authToken);
+        if (entry == null) {
+            return null;
+        }
+        if (System.nanoTime() - entry.expires() > 0) {
+            entries.remove(authToken);
+            return null;
+        }
+        return entry.authData();
+    }
+
+    /**
+     * @return a stamp to pass to {@link #put} for a value about to be read from the database
+     */
+    public synchronized long stamp() {
+        return generation;
+    }
+
+    /**
+     * Caches auth data read from the database, unless something was invalidated since stamp was taken.
+     */
+    public synchronized void put(AuthData authData, long stamp) {
+        if (maxSize > 0 && stamp == generation) {
+            entries.put(authData.authToken(), new Entry(authData, System.nanoTime() + ttlNanos));
+        }
+    }
+
+    public synchronized void invalidate(String authToken) {
+        generation++;
+        entries.remove(authToken);
+    }
+
+    public synchronized void clear() {
+        generation++;
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+}
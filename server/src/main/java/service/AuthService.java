@@ -9,11 +9,18 @@ public class AuthService extends Service {
         super(dataAccess);
     }
 
+    public AuthService(DataAccess dataAccess, AuthCache authCache) {
+        super(dataAccess, authCache);
+    }
+
     public AuthData createSession(UserData user) throws CodedException {
         try {
             UserData existingUser = dataAccess.getUser(user.username());
             if (existingUser != null && BCrypt.checkpw(user.password(), existingUser.password())) {
-                return dataAccess.createAuth(existingUser.username());
+                var stamp = authCache.stamp();
+                var authData = dataAccess.createAuth(existingUser.username());
+                authCache.put(authData, stamp);
+                return authData;
             }
             throw new CodedException(401, "Invalid username or password");
         } catch (DataAccessException ex) {
@@ -25,6 +32,7 @@ public class AuthService extends Service {
         try {
             getAuthData(authToken);
             dataAccess.deleteAuth(authToken);
+            authCache.invalidate(authToken);
         } catch (DataAccessException ex) {
             throw new CodedException(500, "Internal server error", ex);
         }
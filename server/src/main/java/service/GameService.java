@@ -9,14 +9,29 @@ import model.AuthData;
 import model.GameData;
 
 import java.util.Collection;
+import java.util.List;
 
 
 public class GameService extends Service {
 
+    /**
+     * How many times a change is tried against a freshly read game when the stored game changed
+     * underneath it, e.g. on another server.
+     */
+    private static final int MAX_ATTEMPTS = 5;
+
+    private interface GameChange<T> {
+        T apply() throws CodedException;
+    }
+
     public GameService(DataAccess dataAccess) {
         super(dataAccess);
     }
 
+    public GameService(DataAccess dataAccess, AuthCache authCache) {
+        super(dataAccess, authCache);
+    }
+
     public Collection<GameData> listGames(String authToken) throws CodedException {
         getAuthData(authToken);
         try {
@@ -35,33 +50,48 @@ public class GameService extends Service {
         }
     }
 
+    /**
+     * @return the moves made in the game so far. They are kept apart from the game itself so
+     * that loading and sending a game doesn't cost more as the game gets longer.
+     */
+    public List<ChessMove> listMoves(String authToken, int gameID) throws CodedException {
+        getAuthData(authToken);
+        getGame(gameID);
+        try {
+            return dataAccess.listMoves(gameID);
+        } catch (DataAccessException ex) {
+            throw new CodedException(500, "Server error", ex);
+        }
+    }
+
     public GameData joinGame(String authToken, ChessGame.TeamColor color, int gameID) throws CodedException {
         AuthData authData = getAuthData(authToken);
         String username = authData.username();
-        GameData gameData = getGame(gameID);
-        if (color == null) {
-            return gameData;
-        } else if (gameData.isGameOver()) {
-            throw new CodedException(403, "Game is over");
-        } else {
-            if (color == ChessGame.TeamColor.WHITE) {
-                if (gameData.whiteUsername() == null || gameData.whiteUsername().equals(username)) {
-                    gameData = gameData.setWhite(username);
-                    gameData = gameData.setState(GameData.State.UNDECIDED, String.format("%s joined as white", username));
-                } else {
-                    throw new CodedException(403, "Color taken");
-                }
-            } else if (color == ChessGame.TeamColor.BLACK) {
-                if (gameData.blackUsername() == null || gameData.blackUsername().equals(username)) {
-                    gameData = gameData.setBlack(username);
-                    gameData = gameData.setState(GameData.State.UNDECIDED, String.format("%s joined as black", username));
-                } else {
-                    throw new CodedException(403, "Color taken");
+        return retryOnConflict(() -> {
+            GameData gameData = getGame(gameID);
+            if (color == null) {
+                return gameData;
+            } else if (gameData.isGameOver()) {
+                throw new CodedException(403, "Game is over");
+            } else {
+                if (color == ChessGame.TeamColor.WHITE) {
+                    if (gameData.whiteUsername() == null || gameData.whiteUsername().equals(username)) {
+                        gameData = gameData.setWhite(username);
+                        gameData = gameData.setState(GameData.State.UNDECIDED, String.format("%s joined as white", username));
+                    } else {
+                        throw new CodedException(403, "Color taken");
+                    }
+                } else if (color == ChessGame.TeamColor.BLACK) {
+                    if (gameData.blackUsername() == null || gameData.blackUsername().equals(username)) {
+                        gameData = gameData.setBlack(username);
+                        gameData = gameData.setState(GameData.State.UNDECIDED, String.format("%s joined as black", username));
+                    } else {
+                        throw new CodedException(403, "Color taken");
+                    }
                 }
+                return updateGame(gameData);
             }
-            updateGame(gameData);
-        }
-        return gameData;
+        });
     }
 
     public record ConnectionInfo(String username, String role, GameData gameData) {
@@ -81,49 +111,55 @@ public class GameService extends Service {
     public MoveInfo makeMove(String authToken, int gameID, ChessMove move) throws CodedException {
         AuthData authData = getAuthData(authToken);
         String username = authData.username();
-        try {
-            GameData gameData = getGame(gameID);
-            return new MoveInfo(username, updateGame(gameData.makeMove(username, move)));
-        } catch (InvalidMoveException ex) {
-            throw new CodedException(400, ex.getMessage(), ex);
-        }
+        return retryOnConflict(() -> {
+            try {
+                GameData gameData = getGame(gameID);
+                return new MoveInfo(username, addMove(gameData.makeMove(username, move), move));
+            } catch (InvalidMoveException ex) {
+                throw new CodedException(400, ex.getMessage(), ex);
+            }
+        });
     }
 
     public String leaveGame(String authToken, int gameID) throws CodedException {
         AuthData authData = getAuthData(authToken);
         String username = authData.username();
-        GameData gameData = getGame(gameID);
-        if (!gameData.isGameOver()) {
-            if (username.equals(gameData.whiteUsername())) {
-                gameData = gameData.setWhite(null);
-                gameData = gameData.setState(gameData.state(), String.format("%s playing WHITE has resigned the game", username));
-            } else if (username.equals(gameData.blackUsername())) {
-                gameData = gameData.setBlack(null);
-                gameData = gameData.setState(gameData.state(), String.format("%s playing BLACK has resigned the game", username));
+        return retryOnConflict(() -> {
+            GameData gameData = getGame(gameID);
+            if (!gameData.isGameOver()) {
+                if (username.equals(gameData.whiteUsername())) {
+                    gameData = gameData.setWhite(null);
+                    gameData = gameData.setState(gameData.state(), String.format("%s playing WHITE has resigned the game", username));
+                } else if (username.equals(gameData.blackUsername())) {
+                    gameData = gameData.setBlack(null);
+                    gameData = gameData.setState(gameData.state(), String.format("%s playing BLACK has resigned the game", username));
+                }
+                updateGame(gameData);
             }
-            updateGame(gameData);
-        }
-        return username;
+            return username;
+        });
     }
 
 
     public String resignGame(String authToken, int gameID) throws CodedException {
         AuthData authData = getAuthData(authToken);
         String username = authData.username();
-        GameData gameData = getGame(gameID);
-        if (!gameData.isGameOver()) {
-            if (username.equals(gameData.whiteUsername()) && gameData.blackUsername() != null) {
-                gameData = gameData.setState(GameData.State.BLACK, String.format("%s playing WHITE resigned!", username));
-            } else if (username.equals(gameData.blackUsername()) && gameData.whiteUsername() != null) {
-                gameData = gameData.setState(GameData.State.WHITE, String.format("%s playing BLACK resigned!", username));
+        return retryOnConflict(() -> {
+            GameData gameData = getGame(gameID);
+            if (!gameData.isGameOver()) {
+                if (username.equals(gameData.whiteUsername()) && gameData.blackUsername() != null) {
+                    gameData = gameData.setState(GameData.State.BLACK, String.format("%s playing WHITE resigned!", username));
+                } else if (username.equals(gameData.blackUsername()) && gameData.whiteUsername() != null) {
+                    gameData = gameData.setState(GameData.State.WHITE, String.format("%s playing BLACK resigned!", username));
+                } else {
+                    throw new CodedException(400, "Observer cannot resign");
+                }
+                updateGame(gameData);
             } else {
-                throw new CodedException(400, "Observer cannot resign");
+                throw new CodedException(400, "Game is already over");
             }
-            updateGame(gameData);
-        } else {
-            throw new CodedException(400, "Game is already over");
-        }
-        return username;
+            return username;
+        });
     }
 
 
@@ -143,7 +179,38 @@ public class GameService extends Service {
         try {
             return dataAccess.updateGame(gameData);
         } catch (DataAccessException ex) {
-            throw new CodedException(500, "Server error", ex);
+            throw writeError(ex);
+        }
+    }
+
+    private GameData addMove(GameData gameData, ChessMove move) throws CodedException {
+        try {
+            return dataAccess.addMove(gameData, move);
+        } catch (DataAccessException ex) {
+            throw writeError(ex);
+        }
+    }
+
+    private CodedException writeError(DataAccessException ex) {
+        if (ex.statusCode() == 409) {
+            return new CodedException(409, "Game was changed by someone else", ex);
+        }
+        return new CodedException(500, "Server error", ex);
+    }
+
+    /**
+     * Runs a change that reads a game, changes it and writes it back, running it again on a
+     * freshly read game if the game changed between the read and the write.
+     */
+    private <T> T retryOnConflict(GameChange<T> change) throws CodedException {
+        for (var attempt = 1; ; attempt++) {
+            try {
+                return change.apply();
+            } catch (CodedException ex) {
+                if (ex.statusCode() != 409 || attempt == MAX_ATTEMPTS) {
+                    throw ex;
+                }
+            }
         }
     }
 
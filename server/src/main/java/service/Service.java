@@ -6,18 +6,33 @@ import model.AuthData;
 
 public abstract class Service {
     protected final DataAccess dataAccess;
+    protected final AuthCache authCache;
 
     protected Service(DataAccess dataAccess) {
+        this(dataAccess, AuthCache.NONE);
+    }
 
+    /**
+     * @param authCache shared by every service that checks or removes auth tokens
+     */
+    protected Service(DataAccess dataAccess, AuthCache authCache) {
         this.dataAccess = dataAccess;
+        this.authCache = authCache;
     }
 
 
     protected AuthData getAuthData(String authToken) throws CodedException {
         try {
             if (authToken != null) {
-                var authData = dataAccess.getAuth(authToken);
+                var authData = authCache.get(authToken);
+                if (authData != null) {
+                    return authData;
+                }
+
+                var stamp = authCache.stamp();
+                authData = dataAccess.getAuth(authToken);
                 if (authData != null) {
+                    authCache.put(authData, stamp);
                     return authData;
                 }
             }
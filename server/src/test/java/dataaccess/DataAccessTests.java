@@ -1,12 +1,17 @@
 package dataaccess;
 
+import chess.ChessGame;
+import chess.ChessMove;
 import model.GameData;
 import model.UserData;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 
 public class DataAccessTests extends DbTests {
 
@@ -62,14 +67,124 @@ public class DataAccessTests extends DbTests {
     public void writeReadGame(DataAccess dataAccess) throws Exception {
 
         var game = dataAccess.createGame("blitz");
-        var updatedGame = game.setBlack("joe");
-        dataAccess.updateGame(updatedGame);
+        var updatedGame = dataAccess.updateGame(game.setBlack("joe"));
+        Assertions.assertEquals(game.version() + 1, updatedGame.version());
 
         var retrievedGame = dataAccess.getGame(game.gameID());
         Assertions.assertEquals(retrievedGame, updatedGame);
     }
 
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("dataAccessImplementations")
+    public void addMoves(DataAccess dataAccess) throws Exception {
+        var game = dataAccess.updateGame(dataAccess.createGame("blitz").setWhite("joe").setBlack("sue"));
+        var moves = new ArrayList<ChessMove>();
+        for (var notation : List.of("e2e4", "e7e5", "g1f3")) {
+            var username = game.game().getTeamTurn() == ChessGame.TeamColor.WHITE ? "joe" : "sue";
+            var move = new ChessMove(notation);
+            game = dataAccess.addMove(game.makeMove(username, move), move);
+            moves.add(move);
+        }
+
+        var retrievedGame = dataAccess.getGame(game.gameID());
+        Assertions.assertEquals(game, retrievedGame);
+        Assertions.assertEquals(game.game().toFen(), retrievedGame.game().toFen());
+        Assertions.assertEquals(moves, dataAccess.listMoves(game.gameID()));
+    }
+
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("dataAccessImplementations")
+    public void updateStaleGame(DataAccess dataAccess) throws Exception {
+        var game = dataAccess.createGame("blitz");
+        dataAccess.updateGame(game.setWhite("joe"));
+
+        var ex = Assertions.assertThrows(DataAccessException.class, () -> dataAccess.updateGame(game.setBlack("sue")));
+        Assertions.assertEquals(409, ex.statusCode());
+        Assertions.assertEquals("joe", dataAccess.getGame(game.gameID()).whiteUsername());
+        Assertions.assertNull(dataAccess.getGame(game.gameID()).blackUsername());
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("dataAccessImplementations")
+    public void cachedGame(DataAccess dataAccess) throws Exception {
+        try (var cache = new GameCacheDataAccess(dataAccess, 60_000)) {
+            var game = cache.updateGame(cache.createGame("blitz").setWhite("joe").setBlack("sue"));
+            var moves = new ArrayList<ChessMove>();
+            for (var notation : List.of("f2f3", "e7e5", "g2g4")) {
+                var username = game.game().getTeamTurn() == ChessGame.TeamColor.WHITE ? "joe" : "sue";
+                var move = new ChessMove(notation);
+                game = cache.addMove(game.makeMove(username, move), move);
+                moves.add(move);
+            }
+
+            Assertions.assertEquals(game, cache.getGame(game.gameID()));
+            Assertions.assertEquals(game.version(), dataAccess.getGame(game.gameID()).version());
+            Assertions.assertEquals(game.game().toFen(), dataAccess.getGame(game.gameID()).game().toFen());
+            Assertions.assertEquals(moves, cache.listMoves(game.gameID()));
+
+            var mate = new ChessMove("d8h4");
+            game = cache.addMove(game.makeMove("sue", mate), mate);
+            Assertions.assertTrue(game.isGameOver());
+            Assertions.assertEquals(GameData.State.BLACK, dataAccess.getGame(game.gameID()).state());
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("dataAccessImplementations")
+    public void cachedGameChangedInStore(DataAccess dataAccess) throws Exception {
+        try (var cache = new GameCacheDataAccess(dataAccess, 60_000)) {
+            var game = cache.updateGame(cache.createGame("blitz").setWhite("joe").setBlack("sue"));
+
+            // Another server moves first, so the cache's copy of the game is out of date.
+            var elsewhere = new ChessMove("e2e4");
+            dataAccess.addMove(dataAccess.getGame(game.gameID()).makeMove("joe", elsewhere), elsewhere);
+
+            var move = new ChessMove("d2d4");
+            var stale = game;
+            var ex = Assertions.assertThrows(DataAccessException.class, () -> cache.addMove(stale.makeMove("joe", move), move));
+            Assertions.assertEquals(409, ex.statusCode());
+            Assertions.assertEquals(List.of(elsewhere), cache.listMoves(game.gameID()));
+
+            // The cache reads the game from the store again, so a retry sees the other server's move.
+            var reloaded = cache.getGame(game.gameID());
+            Assertions.assertEquals(dataAccess.getGame(game.gameID()), reloaded);
+            Assertions.assertEquals(ChessGame.TeamColor.BLACK, reloaded.game().getTeamTurn());
+
+            var reply = new ChessMove("e7e5");
+            game = cache.addMove(reloaded.makeMove("sue", reply), reply);
+            Assertions.assertEquals(game, dataAccess.getGame(game.gameID()));
+            Assertions.assertEquals(List.of(elsewhere, reply), cache.listMoves(game.gameID()));
+        }
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("dataAccessImplementations")
+    public void movesOnGameStartedFromFen(DataAccess dataAccess) throws Exception {
+        var created = dataAccess.createGame("endgame");
+        // A position part way through a game, so its move counters don't start at the beginning.
+        var game = dataAccess.updateGame(new GameData(created.gameID(), "joe", "sue", "endgame",
+                ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 40"), GameData.State.UNDECIDED,
+                "Game created", created.version()));
+
+        // Enough moves to cross a full rewrite of the game, with some moves logged after it.
+        var random = new Random(15);
+        var moves = new ArrayList<ChessMove>();
+        for (var i = 0; i < 25; i++) {
+            var legal = game.game().allLegalMoves().stream().sorted(Comparator.comparing(ChessMove::toString)).toList();
+            var move = legal.get(random.nextInt(legal.size()));
+            game.game().makeMove(move);
+            game = dataAccess.addMove(game, move);
+            moves.add(move);
+        }
+
+        Assertions.assertEquals(game.game().toFen(), dataAccess.getGame(game.gameID()).game().toFen());
+        var listed = dataAccess.listGames().stream().filter(g -> g.gameID() == created.gameID()).findFirst().orElseThrow();
+        Assertions.assertEquals(game.game().toFen(), listed.game().toFen());
+        Assertions.assertEquals(moves, dataAccess.listMoves(game.gameID()));
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource("dataAccessImplementations")
     public void writeNullGame(DataAccess dataAccess) throws Exception {
@@ -0,0 +1,140 @@
+package server;
+
+import io.javalin.websocket.WsContext;
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import websocket.messages.ServerMessage.ServerMessageType;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+public class ConnectionTests {
+    private final List<String> sent = new ArrayList<>();
+    private final List<Runnable> senders = new ArrayList<>();
+    private Integer closeCode;
+
+    private OutboundCounters counters;
+    private Connection connection;
+
+    /**
+     * A connection whose sender only runs when the test says so, so messages pile up as they
+     * would for a client that reads slowly.
+     */
+    @BeforeEach
+    public void setup() {
+        counters = new OutboundCounters();
+        connection = new Connection(1, new WsContext("session", fakeSession()) {
+        }, senders::add, counters);
+    }
+
+    @Test
+    public void loadGameReplacesWaitingLoadGameInPlace() {
+        connection.send(ServerMessageType.LOAD_GAME, "board 1");
+        connection.send(ServerMessageType.NOTIFICATION, "joe moved");
+        connection.send(ServerMessageType.LOAD_GAME, "board 2");
+
+        Assertions.assertEquals(2, connection.queued());
+        var stats = counters.stats(1, connection.queued());
+        Assertions.assertEquals(1, stats.coalesced());
+        Assertions.assertEquals(2, stats.queued());
+
+        runSenders();
+        // The newer board goes out where the first one was queued, ahead of the notification.
+        Assertions.assertEquals(List.of("board 2", "joe moved"), sent);
+        Assertions.assertEquals(0, counters.stats(1, 0).queued());
+        Assertions.assertEquals(2, counters.stats(1, 0).sent());
+    }
+
+    @Test
+    public void loadGameQueuedAgainOnceSent() {
+        connection.send(ServerMessageType.LOAD_GAME, "board 1");
+        runSenders();
+        connection.send(ServerMessageType.LOAD_GAME, "board 2");
+
+        runSenders();
+        Assertions.assertEquals(List.of("board 1", "board 2"), sent);
+        Assertions.assertEquals(0, counters.stats(1, 0).coalesced());
+    }
+
+    @Test
+    public void nothingQueuedOnceSendersStop() {
+        var stopped = new Connection(1, new WsContext("session", fakeSession()) {
+        }, task -> {
+            throw new RejectedExecutionException();
+        }, counters);
+        stopped.send(ServerMessageType.NOTIFICATION, "joe moved");
+        stopped.send(ServerMessageType.NOTIFICATION, "sue moved");
+
+        Assertions.assertEquals(0, stopped.queued());
+        Assertions.assertEquals(0, counters.stats(1, 0).queued());
+        Assertions.assertTrue(sent.isEmpty());
+    }
+
+    @Test
+    public void notificationsAreNotCoalesced() {
+        connection.send(ServerMessageType.NOTIFICATION, "joe moved");
+        connection.send(ServerMessageType.NOTIFICATION, "sue moved");
+
+        runSenders();
+        Assertions.assertEquals(List.of("joe moved", "sue moved"), sent);
+        Assertions.assertEquals(0, counters.stats(1, 0).coalesced());
+    }
+
+    @Test
+    public void disconnectWhenTooFarBehind() {
+        for (var i = 0; i < Connection.MAX_QUEUED; i++) {
+            connection.send(ServerMessageType.NOTIFICATION, "message " + i);
+        }
+        Assertions.assertEquals(Connection.MAX_QUEUED, connection.queued());
+        Assertions.assertNull(closeCode);
+
+        connection.send(ServerMessageType.NOTIFICATION, "one too many");
+        Assertions.assertEquals(1008, (int) closeCode);
+        Assertions.assertEquals(0, connection.queued());
+        var stats = counters.stats(1, 0);
+        Assertions.assertEquals(1, stats.disconnected());
+        Assertions.assertEquals(0, stats.queued());
+
+        // Nothing more is queued or sent once the connection has been dropped.
+        connection.send(ServerMessageType.NOTIFICATION, "after");
+        runSenders();
+        Assertions.assertTrue(sent.isEmpty());
+        Assertions.assertEquals(1, counters.stats(1, 0).disconnected());
+    }
+
+    private void runSenders() {
+        while (!senders.isEmpty()) {
+            senders.removeFirst().run();
+        }
+    }
+
+    /**
+     * @return a session that records what is sent to it and how it was closed
+     */
+    private Session fakeSession() {
+        var remote = (RemoteEndpoint) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{RemoteEndpoint.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("sendString") && args.length == 1) {
+                        sent.add((String) args[0]);
+                    }
+                    return null;
+                });
+        return (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getRemote" -> remote;
+                    case "isOpen" -> closeCode == null;
+                    case "close" -> {
+                        if (args != null && args.length == 2) {
+                            closeCode = (Integer) args[0];
+                        }
+                        yield null;
+                    }
+                    default -> null;
+                });
+    }
+}
@@ -7,6 +7,8 @@ import static org.junit.jupiter.api.Assertions.*;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.util.Set;
+
 public class AdminServiceTests extends DbTests {
 
     @ParameterizedTest(name = "{0}")
@@ -27,4 +29,38 @@ public class AdminServiceTests extends DbTests {
 
         assertThrows(CodedException.class, () -> gameService.listGames(authData.authToken()));
     }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("dataAccessImplementations")
+    public void clearWithAuthCache(DataAccess dataAccess) throws Exception {
+        var userService = new UserService(dataAccess);
+        var authData = userService.registerUser(randomUser());
+
+        var authCache = new AuthCache(10, 60_000);
+        var gameService = new GameService(dataAccess, authCache);
+        gameService.listGames(authData.authToken());
+        assertEquals(1, authCache.size());
+
+        new AdminService(dataAccess, authCache).clearApplication();
+        assertEquals(0, authCache.size());
+        assertThrows(CodedException.class, () -> gameService.listGames(authData.authToken()));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("dataAccessImplementations")
+    public void authorize(DataAccess dataAccess) throws Exception {
+        var userService = new UserService(dataAccess);
+        var admin = randomUser();
+        var adminAuth = userService.registerUser(admin);
+        var playerAuth = userService.registerUser(randomUser());
+
+        var service = new AdminService(dataAccess, AuthCache.NONE, Set.of(admin.username()));
+        assertDoesNotThrow(() -> service.authorize(adminAuth.authToken()));
+        assertEquals(403, assertThrows(CodedException.class, () -> service.authorize(playerAuth.authToken())).statusCode());
+        assertEquals(401, assertThrows(CodedException.class, () -> service.authorize("bogus")).statusCode());
+        assertEquals(401, assertThrows(CodedException.class, () -> service.authorize(null)).statusCode());
+
+        var noAdmins = new AdminService(dataAccess);
+        assertEquals(403, assertThrows(CodedException.class, () -> noAdmins.authorize(adminAuth.authToken())).statusCode());
+    }
 }
@@ -63,6 +63,26 @@ public class AuthServiceTests extends DbTests {
         assertThrows(CodedException.class, () -> gameService.listGames(authData.authToken()));
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("dataAccessImplementations")
+    public void logoutWithAuthCache(DataAccess dataAccess) throws Exception {
+        var userService = new UserService(dataAccess);
+        var user = randomUser();
+        userService.registerUser(user);
+
+        var authCache = new AuthCache(10, 60_000);
+        var authService = new AuthService(dataAccess, authCache);
+        var gameService = new GameService(dataAccess, authCache);
+        var authData = authService.createSession(user);
+
+        assertDoesNotThrow(() -> gameService.listGames(authData.authToken()));
+        assertEquals(authData, authCache.get(authData.authToken()));
+
+        authService.deleteSession(authData.authToken());
+        assertNull(authCache.get(authData.authToken()));
+        assertThrows(CodedException.class, () -> gameService.listGames(authData.authToken()));
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource("dataAccessImplementations")
     public void logoutBadAuthToken(DataAccess dataAccess) {
@@ -0,0 +1,225 @@
+package chess;
+
+import static chess.ChessGame.TeamColor;
+
+/**
+ * Precomputed attack tables used to answer "which squares does a piece on this square hit" with a
+ * table lookup.
+ * <p>
+ * Knights, kings and pawns have fixed patterns per square. Rooks and bishops use magic bitboards:
+ * the blockers on a piece's rays are multiplied by a per-square magic number so that every
+ * distinct blocker arrangement hashes to its own slot of a per-square table holding the
+ * resulting attack mask. The magics are found once at class load by a seeded search; the
+ * per-row seeds are ones known to find working magics after only a few tries, so the search
+ * is quick and the tables are identical from run to run.
+ * <p>
+ * For pin and check analysis the class also keeps, for every pair of squares on a shared row,
+ * column or diagonal, the squares strictly between them and the full line through them.
+ */
+public final class Attacks {
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final Magic[] ROOK = new Magic[64];
+    private static final Magic[] BISHOP = new Magic[64];
+
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    private static final int[][] ROOK_DIRECTIONS = {{1, 0}, {-1, 0}, {0, 1}, {0, -1}};
+    private static final int[][] BISHOP_DIRECTIONS = {{1, 1}, {1, -1}, {-1, 1}, {-1, -1}};
+    private static final long[] ROW_SEEDS = {728, 10316, 55013, 32803, 12281, 15100, 16645, 255};
+
+    private Attacks() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+    /**
+     * A per-square magic lookup. The relevant blockers are selected with mask, hashed with
+     * magic and shifted down to an index into attacks.
+     */
+    private record Magic(long mask, long magic, int shift, long[] attacks) {
+        long lookup(long occupied) {
+            return attacks[(int) (((occupied & mask) * magic) >>> shift)];
+        }
+    }
+
+    static {
+        for (var square = 0; square < 64; square++) {
+            KNIGHT[square] = step(square, new int[][]{{2, 1}, {2, -1}, {1, 2}, {-1, 2}, {-2, 1}, {-2, -1}, {1, -2}, {-1, -2}});
+            KING[square] = step(square, new int[][]{{1, 0}, {-1, 0}, {0, 1}, {0, -1}, {1, 1}, {1, -1}, {-1, 1}, {-1, -1}});
+            PAWN[TeamColor.WHITE.ordinal()][square] = step(square, new int[][]{{1, 1}, {1, -1}});
+            PAWN[TeamColor.BLACK.ordinal()][square] = step(square, new int[][]{{-1, 1}, {-1, -1}});
+            ROOK[square] = findMagic(square, ROOK_DIRECTIONS, new SparseRandom(ROW_SEEDS[square >>> 3]));
+            BISHOP[square] = findMagic(square, BISHOP_DIRECTIONS, new SparseRandom(ROW_SEEDS[square >>> 3]));
+        }
+        for (var a = 0; a < 64; a++) {
+            for (var b = 0; b < 64; b++) {
+                var ends = Bitboards.bit(a) | Bitboards.bit(b);
+                if (a != b && (rook(a, 0) & Bitboards.bit(b)) != 0) {
+                    BETWEEN[a][b] = rook(a, Bitboards.bit(b)) & rook(b, Bitboards.bit(a));
+                    LINE[a][b] = (rook(a, 0) & rook(b, 0)) | ends;
+                } else if (a != b && (bishop(a, 0) & Bitboards.bit(b)) != 0) {
+                    BETWEEN[a][b] = bishop(a, Bitboards.bit(b)) & bishop(b, Bitboards.bit(a));
+                    LINE[a][b] = (bishop(a, 0) & bishop(b, 0)) | ends;
+                }
+            }
+        }
+    }
+
+    public static long knight(int square) {
+        return KNIGHT[square];
+    }
+
+    public static long king(int square) {
+        return KING[square];
+    }
+
+    /**
+     * The squares a pawn of the given color standing on square could capture on.
+     */
+    public static long pawn(TeamColor color, int square) {
+        return PAWN[color.ordinal()][square];
+    }
+
+    public static long rook(int square, long occupied) {
+        return ROOK[square].lookup(occupied);
+    }
+
+    public static long bishop(int square, long occupied) {
+        return BISHOP[square].lookup(occupied);
+    }
+
+    public static long queen(int square, long occupied) {
+        return ROOK[square].lookup(occupied) | BISHOP[square].lookup(occupied);
+    }
+
+
+    /**
+     * @return the squares strictly between a and b, or 0 if they do not share a row, column or diagonal
+     */
+    public static long between(int a, int b) {
+        return BETWEEN[a][b];
+    }
+
+    /**
+     * @return the whole row, column or diagonal through a and b, or 0 if they do not share one
+     */
+    public static long line(int a, int b) {
+        return LINE[a][b];
+    }
+
+
+    private static long step(int square, int[][] offsets) {
+        var result = 0L;
+        for (var offset : offsets) {
+            var row = (square >>> 3) + offset[0];
+            var col = (square & 7) + offset[1];
+            if (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                result |= Bitboards.bit(row * 8 + col);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Walks each ray from square until it runs off the board or hits an occupied square. This is
+     * only used to fill the tables.
+     */
+    private static long slide(int square, long occupied, int[][] directions) {
+        var result = 0L;
+        for (var direction : directions) {
+            var row = (square >>> 3) + direction[0];
+            var col = (square & 7) + direction[1];
+            while (row >= 0 && row < 8 && col >= 0 && col < 8) {
+                var bit = Bitboards.bit(row * 8 + col);
+                result |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The squares whose occupancy can change the attack set. The last square of each ray is
+     * left out because a blocker there does not shorten the ray.
+     */
+    private static long relevantMask(int square, int[][] directions) {
+        var result = 0L;
+        for (var direction : directions) {
+            var row = (square >>> 3) + direction[0];
+            var col = (square & 7) + direction[1];
+            while (row + direction[0] >= 0 && row + direction[0] < 8 && col + direction[1] >= 0 && col + direction[1] < 8) {
+                result |= Bitboards.bit(row * 8 + col);
+                row += direction[0];
+                col += direction[1];
+            }
+        }
+        return result;
+    }
+
+    private static Magic findMagic(int square, int[][] directions, SparseRandom random) {
+        var mask = relevantMask(square, directions);
+        var bits = Long.bitCount(mask);
+        var size = 1 << bits;
+
+        // Enumerate every subset of the mask along with the attacks it produces.
+        var occupancies = new long[size];
+        var reference = new long[size];
+        var subset = 0L;
+        for (var i = 0; i < size; i++) {
+            occupancies[i] = subset;
+            reference[i] = slide(square, subset, directions);
+            subset = (subset - mask) & mask;
+        }
+
+        var attacks = new long[size];
+        var epoch = new int[size];
+        for (var attempt = 1; ; attempt++) {
+            var magic = random.nextSparse();
+            if (Long.bitCount((mask * magic) & 0xFF00000000000000L) < 6) {
+                continue;
+            }
+            var collision = false;
+            for (var i = 0; i < size && !collision; i++) {
+                var index = (int) ((occupancies[i] * magic) >>> (64 - bits));
+                if (epoch[index] != attempt) {
+                    epoch[index] = attempt;
+                    attacks[index] = reference[i];
+                } else if (attacks[index] != reference[i]) {
+                    collision = true;
+                }
+            }
+            if (!collision) {
+                return new Magic(mask, magic, 64 - bits, attacks);
+            }
+        }
+    }
+
+    /**
+     * A xorshift generator that produces numbers with few set bits, which make good magic candidates.
+     */
+    private static final class SparseRandom {
+        private long state;
+
+        SparseRandom(long seed) {
+            state = seed;
+        }
+
+        long next() {
+            state ^= state >>> 12;
+            state ^= state << 25;
+            state ^= state >>> 27;
+            return state * 2685821657736338717L;
+        }
+
+        long nextSparse() {
+            return next() & next() & next();
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package chess;
+
+/**
+ * Helpers for working with 64-bit square masks.
+ * <p>
+ * Square 0 is a1 and square 63 is h8, so shifting a mask left by 8 moves it up one row and
+ * shifting left by 1 moves it one column to the right.
+ */
+public final class Bitboards {
+    private Bitboards() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+    public static int square(int row, int col) {
+        return (row - 1) * 8 + (col - 1);
+    }
+
+    public static int square(ChessPosition pos) {
+        return square(pos.getRow(), pos.getColumn());
+    }
+
+    public static ChessPosition position(int square) {
+        return ChessPosition.of((square >>> 3) + 1, (square & 7) + 1);
+    }
+
+    public static long bit(int square) {
+        return 1L << square;
+    }
+
+    public static long bit(int row, int col) {
+        return bit(square(row, col));
+    }
+}
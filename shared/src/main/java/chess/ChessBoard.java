@@ -13,8 +13,77 @@ import static chess.ChessPiece.PieceType;
  * signature of the existing methods.
  */
 public class ChessBoard {
-    final ChessPiece[][] squares = new ChessPiece[8][8];
-    final public ArrayList<ChessMove> history = new ArrayList<>();
+    /**
+     * One mask per color and piece type, indexed by {@link #index(TeamColor, PieceType)}.
+     */
+    final long[] bitboards = new long[12];
+    /**
+     * The squares occupied by each team, indexed by {@link TeamColor#ordinal()}.
+     */
+    final long[] occupancy = new long[2];
+    /**
+     * The moves made on this board object since it was created or loaded. It is not part of the
+     * stored or serialized game, so a game costs the same to store and send however long it is;
+     * the full move list of a stored game is archived separately by the server.
+     */
+    final public transient ArrayList<ChessMove> history = new ArrayList<>();
+    /**
+     * The castling moves still available, as a combination of the CASTLE_* flags. Cleared as
+     * kings and rooks leave (or are captured on) their starting squares.
+     */
+    int castlingRights = ALL_CASTLING_RIGHTS;
+    /**
+     * The square a pawn passed over with a double step on the previous move, or NO_SQUARE if
+     * the previous move was not a double step.
+     */
+    int enPassantSquare = NO_SQUARE;
+    /**
+     * Undo records for moves applied with {@link #makeMove(int)} that have not been taken back
+     * yet. Each record is packed into a long: the move in bits 0-16, the captured piece's index
+     * plus one (0 for none) in bits 17-20, the castling rights before the move in bits 21-24 and
+     * the en passant square before the move plus one in bits 25-31.
+     */
+    private transient long[] undoStack = new long[32];
+    private transient int undoCount;
+
+    /**
+     * Zobrist key of the pieces alone, updated by every change to the bitboards. It is only
+     * trusted once pieceKeyValid is set: a board built by Gson has its bitboards filled in
+     * without going through the board's methods, so the key is recomputed the first time it
+     * is needed.
+     */
+    private transient long pieceKey;
+    private transient boolean pieceKeyValid;
+
+    public static final int CASTLE_WHITE_KING_SIDE = 1;
+    public static final int CASTLE_WHITE_QUEEN_SIDE = 2;
+    public static final int CASTLE_BLACK_KING_SIDE = 4;
+    public static final int CASTLE_BLACK_QUEEN_SIDE = 8;
+    static final int ALL_CASTLING_RIGHTS = 15;
+    /**
+     * Stands for no square, e.g. as the en passant square when the last move wasn't a double step.
+     */
+    public static final int NO_SQUARE = -1;
+    private static final int NO_PIECE = -1;
+    private static final PieceType[] PIECE_TYPES = PieceType.values();
+    private static final TeamColor[] TEAM_COLORS = TeamColor.values();
+    private static final long LIGHT_SQUARES = 0x55AA55AA55AA55AAL;
+
+    /**
+     * The castling rights that survive a move touching each square. Moving from or to a corner
+     * or king square gives up the rights that depend on the piece that started there.
+     */
+    static final int[] CASTLING_RIGHTS_KEPT = new int[64];
+
+    static {
+        Arrays.fill(CASTLING_RIGHTS_KEPT, ALL_CASTLING_RIGHTS);
+        CASTLING_RIGHTS_KEPT[Bitboards.square(1, 1)] &= ~CASTLE_WHITE_QUEEN_SIDE;
+        CASTLING_RIGHTS_KEPT[Bitboards.square(1, 8)] &= ~CASTLE_WHITE_KING_SIDE;
+        CASTLING_RIGHTS_KEPT[Bitboards.square(1, 5)] &= ~(CASTLE_WHITE_KING_SIDE | CASTLE_WHITE_QUEEN_SIDE);
+        CASTLING_RIGHTS_KEPT[Bitboards.square(8, 1)] &= ~CASTLE_BLACK_QUEEN_SIDE;
+        CASTLING_RIGHTS_KEPT[Bitboards.square(8, 8)] &= ~CASTLE_BLACK_KING_SIDE;
+        CASTLING_RIGHTS_KEPT[Bitboards.square(8, 5)] &= ~(CASTLE_BLACK_KING_SIDE | CASTLE_BLACK_QUEEN_SIDE);
+    }
 
 
     public ChessBoard() {
@@ -22,12 +91,12 @@ public class ChessBoard {
     }
 
     public ChessBoard(ChessBoard board) {
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                ChessPiece piece = board.squares[i][j];
-                this.squares[i][j] = (piece == null) ? null : new ChessPiece(piece);
-            }
-        }
+        System.arraycopy(board.bitboards, 0, this.bitboards, 0, bitboards.length);
+        System.arraycopy(board.occupancy, 0, this.occupancy, 0, occupancy.length);
+        this.castlingRights = board.castlingRights;
+        this.enPassantSquare = board.enPassantSquare;
+        this.pieceKey = board.pieceKey;
+        this.pieceKeyValid = board.pieceKeyValid;
     }
 
 
@@ -37,50 +106,163 @@ public class ChessBoard {
 
 
     public void movePiece(ChessMove move) {
-        var piece = getPiece(move.getStartPosition());
+        doMove(encode(move));
+        history.add(move);
+    }
 
-        // Handle promotion
-        if (move.getPromotionPiece() != null) {
-            piece = new ChessPiece(piece.getTeamColor(), move.getPromotionPiece());
+    /**
+     * Removes the pawn captured by an en passant move whose pawn has already been moved.
+     * {@link #movePiece(ChessMove)} does this itself, so this is only needed for pawns moved
+     * some other way.
+     */
+    public void enPassant(ChessMove move) {
+        var end = move.getEndPosition();
+        clearSquare(Bitboards.square(end.getRow() == 6 ? 5 : 4, end.getColumn()));
+    }
+
+    /**
+     * Moves the rook that goes with a castling move of the king. {@link #movePiece(ChessMove)}
+     * moves the rook itself, so this is only needed for kings moved some other way.
+     */
+    public void castle(ChessMove move) {
+        var row = move.getEndPosition().getRow();
+        var kingSide = move.getEndPosition().getColumn() == 7;
+        movePiece(new ChessMove(ChessPosition.of(row, kingSide ? 8 : 1), ChessPosition.of(row, kingSide ? 6 : 4), null));
+    }
+
+    /**
+     * Works out the packed form of a move from the piece that is making it: a king moving two
+     * columns is a castle, a pawn moving diagonally onto an empty square is capturing en
+     * passant, and a pawn moving two rows is a double step.
+     *
+     * @throws IllegalArgumentException if there is no piece on the move's start square
+     */
+    int encode(ChessMove move) {
+        var from = Bitboards.square(move.getStartPosition());
+        var to = Bitboards.square(move.getEndPosition());
+        var promotion = move.getPromotionPiece();
+        var piece = pieceIndex(from);
+        if (piece == NO_PIECE) {
+            throw new IllegalArgumentException("No piece at " + move.getStartPosition() + " to move");
         }
-        // Handle castle
-        else if ((piece.getPieceType() == PieceType.KING) &&
-                (Math.abs(move.getStartPosition().getColumn() - move.getEndPosition().getColumn()) == 2)) {
-            castle(move);
+        var type = piece % PIECE_TYPES.length;
+        var flag = PackedMove.NORMAL;
+        if (promotion == null) {
+            if (type == PieceType.KING.ordinal() && Math.abs((from & 7) - (to & 7)) == 2) {
+                flag = PackedMove.CASTLE;
+            } else if (type == PieceType.PAWN.ordinal() && (from & 7) != (to & 7) && pieceIndex(to) == NO_PIECE) {
+                flag = PackedMove.EN_PASSANT;
+            } else if (type == PieceType.PAWN.ordinal() && Math.abs(to - from) == 16) {
+                flag = PackedMove.DOUBLE_STEP;
+            }
         }
-        // Handle en passant
-        else if ((piece.getPieceType() == PieceType.PAWN) &&
-                (move.getStartPosition().getColumn() != move.getEndPosition().getColumn()) &&
-                (getPiece(move.getEndPosition()) == null)) {
-            enPassant(move);
+        return PackedMove.encode(from, to, promotion, flag);
+    }
+
+    /**
+     * Moves the pieces, captures and updates the castling rights and en passant square for a packed move.
+     *
+     * @return the index of the captured piece, or NO_PIECE
+     */
+    private int doMove(int move) {
+        var from = PackedMove.from(move);
+        var to = PackedMove.to(move);
+        var flag = PackedMove.flag(move);
+        var moved = pieceIndex(from);
+        var color = moved / PIECE_TYPES.length;
+
+        var capturedSquare = flag == PackedMove.EN_PASSANT ? (from & ~7) | (to & 7) : to;
+        var captured = pieceIndex(capturedSquare);
+        if (captured != NO_PIECE) {
+            toggle(captured, capturedSquare);
         }
 
-        removePiece(move.getStartPosition());
-        addPiece(move.getEndPosition(), piece);
+        var promotion = PackedMove.promotion(move);
+        toggle(moved, from);
+        toggle(promotion == null ? moved : color * PIECE_TYPES.length + promotion.ordinal(), to);
 
-        history.add(move);
+        if (flag == PackedMove.CASTLE) {
+            var rook = color * PIECE_TYPES.length + PieceType.ROOK.ordinal();
+            var kingSide = (to & 7) == 6;
+            toggle(rook, (from & ~7) + (kingSide ? 7 : 0));
+            toggle(rook, (from & ~7) + (kingSide ? 5 : 3));
+        }
+
+        castlingRights &= CASTLING_RIGHTS_KEPT[from] & CASTLING_RIGHTS_KEPT[to];
+        enPassantSquare = flag == PackedMove.DOUBLE_STEP ? (from + to) / 2 : NO_SQUARE;
+        return captured;
     }
 
 
-    public void enPassant(ChessMove move) {
-        var killRow = move.getEndPosition().getRow() == 6 ? 5 : 4;
-        var killPosition = new ChessPosition(killRow, move.getEndPosition().getColumn());
+    /**
+     * Applies a move in place and records what is needed to take it back with {@link #unmakeMove()}.
+     * This lets a move be tried out and undone without copying the board. The move is not added
+     * to the history.
+     */
+    public void makeMove(ChessMove move) {
+        makeMove(encode(move));
+    }
 
-        removePiece(killPosition);
+    /**
+     * Same as {@link #makeMove(ChessMove)} for a {@link PackedMove packed move}. Nothing is allocated
+     * unless the undo stack has to grow.
+     */
+    public void makeMove(int move) {
+        var before = ((long) castlingRights << 21) | ((long) (enPassantSquare + 1) << 25);
+        var captured = doMove(move);
+        if (undoCount == undoStack.length) {
+            undoStack = Arrays.copyOf(undoStack, undoCount * 2);
+        }
+        undoStack[undoCount++] = move | ((long) (captured + 1) << 17) | before;
     }
 
-    public void castle(ChessMove move) {
-        var row = move.getEndPosition().getRow();
-        var rookMove = new ChessMove(new ChessPosition(row, 1), new ChessPosition(row, 4), null);
-        if (move.getEndPosition().getColumn() == 7) {
-            rookMove = new ChessMove(new ChessPosition(row, 8), new ChessPosition(row, 6), null);
+    /**
+     * Takes back the most recent move applied with {@link #makeMove(int)} or {@link #makeMove(ChessMove)}.
+     */
+    public void unmakeMove() {
+        var undo = undoStack[--undoCount];
+        var move = (int) (undo & 0x1FFFF);
+        var captured = (int) ((undo >>> 17) & 15) - 1;
+        var from = PackedMove.from(move);
+        var to = PackedMove.to(move);
+        var flag = PackedMove.flag(move);
+
+        var placed = pieceIndex(to);
+        var color = placed / PIECE_TYPES.length;
+        var promotion = PackedMove.promotion(move);
+        toggle(placed, to);
+        toggle(promotion == null ? placed : color * PIECE_TYPES.length + PieceType.PAWN.ordinal(), from);
+
+        if (flag == PackedMove.CASTLE) {
+            var rook = color * PIECE_TYPES.length + PieceType.ROOK.ordinal();
+            var kingSide = (to & 7) == 6;
+            toggle(rook, (from & ~7) + (kingSide ? 5 : 3));
+            toggle(rook, (from & ~7) + (kingSide ? 7 : 0));
+        }
+        if (captured != NO_PIECE) {
+            toggle(captured, flag == PackedMove.EN_PASSANT ? (from & ~7) | (to & 7) : to);
         }
-        movePiece(rookMove);
+
+        castlingRights = (int) ((undo >>> 21) & 15);
+        enPassantSquare = (int) ((undo >>> 25) & 127) - 1;
+    }
+
+    /**
+     * Adds or removes a piece, by index, on a square.
+     */
+    private void toggle(int piece, int square) {
+        var mask = Bitboards.bit(square);
+        bitboards[piece] ^= mask;
+        occupancy[piece / PIECE_TYPES.length] ^= mask;
+        pieceKey ^= Zobrist.piece(piece, square);
     }
 
 
-    private void removePiece(ChessPosition position) {
-        squares[position.getRow() - 1][position.getColumn() - 1] = null;
+    private void clearSquare(int square) {
+        var piece = pieceIndex(square);
+        if (piece != NO_PIECE) {
+            toggle(piece, square);
+        }
     }
 
     /**
@@ -90,7 +272,18 @@ public class ChessBoard {
      * @param piece    the piece to add
      */
     public void addPiece(ChessPosition position, ChessPiece piece) {
-        squares[position.getRow() - 1][position.getColumn() - 1] = piece;
+        var square = Bitboards.square(position);
+        clearSquare(square);
+        if (piece != null) {
+            setPiece(square, piece);
+        }
+    }
+
+    /**
+     * Places a piece on a square that is known to be empty.
+     */
+    private void setPiece(int square, ChessPiece piece) {
+        toggle(index(piece.getTeamColor(), piece.getPieceType()), square);
     }
 
     /**
@@ -101,7 +294,61 @@ public class ChessBoard {
      * position
      */
     public ChessPiece getPiece(ChessPosition position) {
-        return squares[position.getRow() - 1][position.getColumn() - 1];
+        return getPiece(Bitboards.square(position));
+    }
+
+    ChessPiece getPiece(int square) {
+        var piece = pieceIndex(square);
+        if (piece == NO_PIECE) {
+            return null;
+        }
+        return ChessPiece.of(TEAM_COLORS[piece / PIECE_TYPES.length], PIECE_TYPES[piece % PIECE_TYPES.length]);
+    }
+
+    /**
+     * @return the index into bitboards of the piece on square, or NO_PIECE if the square is empty
+     */
+    private int pieceIndex(int square) {
+        var mask = Bitboards.bit(square);
+        int base;
+        if ((occupancy[0] & mask) != 0) {
+            base = 0;
+        } else if ((occupancy[1] & mask) != 0) {
+            base = PIECE_TYPES.length;
+        } else {
+            return NO_PIECE;
+        }
+        for (var i = base; i < base + PIECE_TYPES.length; i++) {
+            if ((bitboards[i] & mask) != 0) {
+                return i;
+            }
+        }
+        return NO_PIECE;
+    }
+
+    /**
+     * @return the mask of squares holding the given team's pieces of the given type
+     */
+    public long pieces(TeamColor color, PieceType type) {
+        return bitboards[index(color, type)];
+    }
+
+    /**
+     * @return the mask of squares holding any of the given team's pieces
+     */
+    public long occupancy(TeamColor color) {
+        return occupancy[color.ordinal()];
+    }
+
+    /**
+     * @return the mask of squares holding any piece
+     */
+    public long occupancy() {
+        return occupancy[0] | occupancy[1];
+    }
+
+    private static int index(TeamColor color, PieceType type) {
+        return color.ordinal() * PIECE_TYPES.length + type.ordinal();
     }
 
     /**
@@ -119,70 +366,143 @@ public class ChessBoard {
                 PieceType.KNIGHT,
                 PieceType.ROOK
         };
+        Arrays.fill(bitboards, 0);
+        Arrays.fill(occupancy, 0);
+        pieceKey = 0;
+        pieceKeyValid = true;
+        castlingRights = ALL_CASTLING_RIGHTS;
+        enPassantSquare = NO_SQUARE;
+        history.clear();
         for (var i = 0; i < 8; i++) {
-            squares[0][i] = new ChessPiece(TeamColor.WHITE, pieces[i]);
-            squares[1][i] = new ChessPiece(TeamColor.WHITE, PieceType.PAWN);
-            squares[2][i] = null;
-            squares[3][i] = null;
-            squares[4][i] = null;
-            squares[5][i] = null;
-            squares[6][i] = new ChessPiece(TeamColor.BLACK, PieceType.PAWN);
-            squares[7][i] = new ChessPiece(TeamColor.BLACK, pieces[i]);
+            addPiece(ChessPosition.of(1, i + 1), ChessPiece.of(TeamColor.WHITE, pieces[i]));
+            addPiece(ChessPosition.of(2, i + 1), ChessPiece.of(TeamColor.WHITE, PieceType.PAWN));
+            addPiece(ChessPosition.of(7, i + 1), ChessPiece.of(TeamColor.BLACK, PieceType.PAWN));
+            addPiece(ChessPosition.of(8, i + 1), ChessPiece.of(TeamColor.BLACK, pieces[i]));
         }
     }
 
 
     public ChessPlacement getPlacement(TeamColor color, PieceType type) {
-        for (var placement : collection()) {
-            if (placement.getPiece().getTeamColor() == color && placement.getPiece().getPieceType() == type) {
-                return placement;
-            }
+        var mask = pieces(color, type);
+        if (mask == 0) {
+            return null;
         }
-        return null;
+        var square = Long.numberOfTrailingZeros(mask);
+        return new ChessPlacement(ChessPiece.of(color, type), Bitboards.position(square));
     }
 
-    public boolean isOriginalPosition(ChessPosition pos) {
-        for (var bh : getHistory()) {
-            if (bh.getStartPosition().equals(pos)) {
-                return false;
-            }
+    /**
+     * @return the square of the team's king, or -1 if the team has no king on the board
+     */
+    public int kingSquare(TeamColor color) {
+        var king = pieces(color, PieceType.KING);
+        return king == 0 ? NO_SQUARE : Long.numberOfTrailingZeros(king);
+    }
+
+    /**
+     * @return true if neither the team's king nor the rook on the given side has moved or been captured.
+     * This says nothing about whether the squares in between are empty or safe.
+     */
+    public boolean hasCastlingRight(TeamColor color, boolean kingSide) {
+        var right = kingSide ? CASTLE_WHITE_KING_SIDE : CASTLE_WHITE_QUEEN_SIDE;
+        if (color == TeamColor.BLACK) {
+            right <<= 2;
         }
-        return true;
+        return (castlingRights & right) != 0;
     }
 
+    /**
+     * @return the square a pawn can capture onto en passant this move, or {@link #NO_SQUARE} if there is none
+     */
+    public int enPassantSquare() {
+        return enPassantSquare;
+    }
 
-    public ChessMove getLastMove() {
-        return history.getLast();
+    /**
+     * Tells from the castling rights and the pawn's rank whether the piece on the square has
+     * never moved, so that it holds for a game read back from storage as well as one played on
+     * this board. Only kings, rooks and pawns can be told apart this way: a king or rook is
+     * unmoved while a castling right that depends on it remains, and a pawn while it is on its
+     * starting row, since it can't go back there.
+     *
+     * @return true if the square holds a king, rook or pawn that is known not to have moved
+     */
+    public boolean isOriginalPosition(ChessPosition pos) {
+        var piece = getPiece(pos);
+        if (piece == null) {
+            return false;
+        }
+        var color = piece.getTeamColor();
+        var homeRow = color == TeamColor.WHITE ? 1 : 8;
+        return switch (piece.getPieceType()) {
+            case PAWN -> pos.getRow() == (color == TeamColor.WHITE ? 2 : 7);
+            case KING -> pos.getRow() == homeRow && pos.getColumn() == 5 &&
+                    (hasCastlingRight(color, true) || hasCastlingRight(color, false));
+            case ROOK -> pos.getRow() == homeRow && (pos.getColumn() == 8 && hasCastlingRight(color, true) ||
+                    pos.getColumn() == 1 && hasCastlingRight(color, false));
+            default -> false;
+        };
     }
 
 
     public boolean isSquareEmpty(int row, int col) {
-        var pieceAt = getPiece(new ChessPosition(row, col));
-        return pieceAt == null;
+        return (occupancy() & Bitboards.bit(row, col)) == 0;
     }
 
 
     public boolean isAttacked(ChessPosition targetPos, TeamColor targetColor) {
-        return !getAttackers(targetPos, targetColor).isEmpty();
+        return isAttacked(Bitboards.square(targetPos), targetColor);
     }
 
     public Collection<ChessPosition> getAttackers(ChessPosition targetPos, TeamColor targetColor) {
         var attackers = new ArrayList<ChessPosition>();
-
-        for (var candidateAttacker : collection()) {
-            if (candidateAttacker.getPiece().getTeamColor() != targetColor) {
-                var moves = candidateAttacker.pieceMoves(this);
-                for (var move : moves) {
-                    if (move.getEndPosition().equals(targetPos)) {
-                        attackers.add(candidateAttacker.getPos());
-                        break;
-                    }
-                }
-            }
+        for (var mask = attackers(Bitboards.square(targetPos), targetColor); mask != 0; mask &= mask - 1) {
+            attackers.add(Bitboards.position(Long.numberOfTrailingZeros(mask)));
         }
         return attackers;
     }
 
+    /**
+     * Computes the mask of opposing pieces that attack a square by looking outward from the
+     * square with each piece's attack pattern and intersecting with the opponent's pieces of
+     * that type.
+     */
+    long attackers(int square, TeamColor targetColor) {
+        var enemy = targetColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+        var occupied = occupancy();
+        var queens = pieces(enemy, PieceType.QUEEN);
+        return (Attacks.pawn(targetColor, square) & pieces(enemy, PieceType.PAWN)) |
+                (Attacks.knight(square) & pieces(enemy, PieceType.KNIGHT)) |
+                (Attacks.king(square) & pieces(enemy, PieceType.KING)) |
+                (Attacks.bishop(square, occupied) & (pieces(enemy, PieceType.BISHOP) | queens)) |
+                (Attacks.rook(square, occupied) & (pieces(enemy, PieceType.ROOK) | queens));
+    }
+
+    /**
+     * Same question as {@link #attackers(int, TeamColor)}, but stops at the first attacker found.
+     * The cheap fixed-pattern pieces are tried before the sliding pieces.
+     */
+    boolean isAttacked(int square, TeamColor targetColor) {
+        return isAttacked(square, targetColor, occupancy());
+    }
+
+    /**
+     * Answers whether square is attacked as if the given squares were the only occupied ones. Move
+     * generation uses this to see through the king when checking where the king may step.
+     */
+    boolean isAttacked(int square, TeamColor targetColor, long occupied) {
+        var enemy = targetColor == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+        var base = enemy.ordinal() * PIECE_TYPES.length;
+        if ((Attacks.pawn(targetColor, square) & bitboards[base + PieceType.PAWN.ordinal()]) != 0 ||
+                (Attacks.knight(square) & bitboards[base + PieceType.KNIGHT.ordinal()]) != 0 ||
+                (Attacks.king(square) & bitboards[base + PieceType.KING.ordinal()]) != 0) {
+            return true;
+        }
+        var queens = bitboards[base + PieceType.QUEEN.ordinal()];
+        return (Attacks.bishop(square, occupied) & (bitboards[base + PieceType.BISHOP.ordinal()] | queens)) != 0 ||
+                (Attacks.rook(square, occupied) & (bitboards[base + PieceType.ROOK.ordinal()] | queens)) != 0;
+    }
+
     public boolean isMoveLegal(ChessMove move) {
         var piece = getPiece(move.getStartPosition());
 
@@ -194,10 +514,18 @@ public class ChessBoard {
         }
 
         // Test if this move causes the team's king to be put in check.
-        var newBoard = new ChessBoard(this);
-        newBoard.movePiece(move);
-        var king = newBoard.getPlacement(piece.getTeamColor(), PieceType.KING);
-        return king == null || !king.isAttacked(newBoard);
+        makeMove(move);
+        var legal = !isInCheck(piece.getTeamColor());
+        unmakeMove();
+        return legal;
+    }
+
+    /**
+     * @return true if the team has a king and it is attacked. A board without a king for the team is never in check.
+     */
+    public boolean isInCheck(TeamColor color) {
+        var king = kingSquare(color);
+        return king != NO_SQUARE && isAttacked(king, color);
     }
 
 
@@ -226,19 +554,15 @@ public class ChessBoard {
 
 
     private boolean posNotAttacked(int row, int col, TeamColor color) {
-        var pos = new ChessPosition(row, col);
-        return !isAttacked(pos, color);
+        return !isAttacked(Bitboards.square(row, col), color);
     }
 
     public Collection<ChessPlacement> collection() {
         var result = new ArrayList<ChessPlacement>();
 
-        for (var i = 0; i < 8; i++) {
-            for (var j = 0; j < 8; j++) {
-                if (squares[i][j] != null) {
-                    result.add(new ChessPlacement(squares[i][j], new ChessPosition(i + 1, j + 1)));
-                }
-            }
+        for (var mask = occupancy(); mask != 0; mask &= mask - 1) {
+            var square = Long.numberOfTrailingZeros(mask);
+            result.add(new ChessPlacement(getPiece(square), Bitboards.position(square)));
         }
         return result;
     }
@@ -314,10 +638,10 @@ public class ChessBoard {
             sb.append(BORDER).append(row).append(COLOR_RESET);
             for (var j : columns) {
                 var squareColor = ((i + j) % 2 == 0 ? BOARD_BLACK : BOARD_WHITE);
-                if (highlights != null && highlights.contains(new ChessPosition(i + 1, j + 1))) {
+                if (highlights != null && highlights.contains(ChessPosition.of(i + 1, j + 1))) {
                     squareColor = BOARD_HIGHLIGHT;
                 }
-                var piece = squares[i][j];
+                var piece = getPiece(i * 8 + j);
                 sb.append(renderSquare(piece, squareColor));
             }
             sb.append(BORDER).append(row).append(COLOR_RESET);
@@ -344,11 +668,67 @@ public class ChessBoard {
         if (!(o instanceof ChessBoard that)) {
             return false;
         }
-        return Objects.deepEquals(squares, that.squares);
+        return Arrays.equals(bitboards, that.bitboards);
     }
 
+    /**
+     * Neither side can checkmate with only kings, a single minor piece, or bishops that all
+     * stand on squares of the same color.
+     *
+     * @return true if no sequence of legal moves can end in checkmate
+     */
+    public boolean hasInsufficientMaterial() {
+        for (var color : TEAM_COLORS) {
+            if ((pieces(color, PieceType.PAWN) | pieces(color, PieceType.ROOK) | pieces(color, PieceType.QUEEN)) != 0) {
+                return false;
+            }
+        }
+        var knights = pieces(TeamColor.WHITE, PieceType.KNIGHT) | pieces(TeamColor.BLACK, PieceType.KNIGHT);
+        var bishops = pieces(TeamColor.WHITE, PieceType.BISHOP) | pieces(TeamColor.BLACK, PieceType.BISHOP);
+        if (Long.bitCount(knights | bishops) <= 1) {
+            return true;
+        }
+        return knights == 0 && ((bishops & LIGHT_SQUARES) == 0 || (bishops & ~LIGHT_SQUARES) == 0);
+    }
+
+    /**
+     * Identifies the position for repetition detection and caching: the pieces, the castling
+     * rights and, when a pawn could actually capture en passant, the en passant file. Whose turn
+     * it is isn't part of the board, so {@link ChessGame#zobristKey()} adds that.
+     *
+     * @return the 64-bit Zobrist key of this position
+     */
+    public long zobristKey() {
+        var key = pieceKey() ^ Zobrist.castling(castlingRights);
+        if (enPassantSquare != NO_SQUARE) {
+            // A double step by white leaves the en passant square on the third row.
+            var mover = (enPassantSquare >>> 3) == 2 ? TeamColor.WHITE : TeamColor.BLACK;
+            var capturer = mover == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+            if ((Attacks.pawn(mover, enPassantSquare) & pieces(capturer, PieceType.PAWN)) != 0) {
+                key ^= Zobrist.enPassantFile(enPassantSquare);
+            }
+        }
+        return key;
+    }
+
+    private long pieceKey() {
+        if (!pieceKeyValid) {
+            pieceKey = 0;
+            for (var piece = 0; piece < bitboards.length; piece++) {
+                for (var mask = bitboards[piece]; mask != 0; mask &= mask - 1) {
+                    pieceKey ^= Zobrist.piece(piece, Long.numberOfTrailingZeros(mask));
+                }
+            }
+            pieceKeyValid = true;
+        }
+        return pieceKey;
+    }
+
+    /**
+     * Uses the key of the pieces alone, since boards with the same pieces are equal.
+     */
     @Override
     public int hashCode() {
-        return Arrays.deepHashCode(squares);
+        return Long.hashCode(pieceKey());
     }
 }
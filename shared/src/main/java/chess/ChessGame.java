@@ -1,9 +1,13 @@
 package chess;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonParser;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -18,6 +22,37 @@ public class ChessGame {
     public ChessBoard board;
     public TeamColor turn;
 
+    /**
+     * Half-moves since the last capture or pawn move, for the fifty-move rule.
+     */
+    private int halfmoveClock;
+
+    /**
+     * Starts at 1 and goes up after each of black's moves.
+     */
+    private int fullmoveNumber = 1;
+
+    /**
+     * Zobrist keys of the positions since the last capture or pawn move, oldest first. A position
+     * from before an irreversible move can't come up again, so only these need to be kept. They
+     * are stored by {@link #toBytes()} but left out of the JSON, so a game sent to a client is the
+     * same size however long it has gone without a capture or pawn move.
+     */
+    private final transient ArrayList<Long> positionKeys = new ArrayList<>();
+
+    /**
+     * How many times each key in positionKeys occurs. The first counted keys have been added;
+     * a game read back by {@link #fromBytes(byte[])} starts with none counted and catches up on
+     * the next query.
+     */
+    private final transient HashMap<Long, Integer> repetitions = new HashMap<>();
+    private transient int counted;
+
+    /**
+     * Reused by move validation and status checks so that they don't allocate per move.
+     */
+    private final transient MoveList moveBuffer = new MoveList();
+
 
     public ChessGame() {
         board = new ChessBoard();
@@ -25,6 +60,18 @@ public class ChessGame {
         board.resetBoard();
     }
 
+    /**
+     * Copies the position, the move counters and the keys kept for repetition. Like a game that
+     * is stored and read back, the copy's board starts with no history.
+     */
+    public ChessGame(ChessGame copy) {
+        board = new ChessBoard(copy.board);
+        turn = copy.turn;
+        halfmoveClock = copy.halfmoveClock;
+        fullmoveNumber = copy.fullmoveNumber;
+        positionKeys.addAll(copy.positionKeys);
+    }
+
     /**
      * @return Which team's turn it is
      */
@@ -39,6 +86,7 @@ public class ChessGame {
      */
     public void setTeamTurn(TeamColor team) {
         this.turn = team;
+        resetPositionHistory();
     }
 
     /**
@@ -49,27 +97,42 @@ public class ChessGame {
         BLACK
     }
 
+    /**
+     * The state of the game from the point of view of the team whose turn it is
+     */
+    public enum GameStatus {
+        IN_PROGRESS,
+        CHECK,
+        CHECKMATE,
+        STALEMATE,
+        THREEFOLD_REPETITION,
+        FIFTY_MOVE_RULE,
+        INSUFFICIENT_MATERIAL
+    }
+
     /**
      * Gets a valid moves for a piece at the given location
      *
      * @param startPosition the piece to get valid moves for
-     * @return Set of valid moves for requested piece, or null if no piece at
+     * @return Set of valid moves for requested piece, or an empty set if no piece at
      * startPosition
      */
     public Collection<ChessMove> validMoves(ChessPosition startPosition) {
-        var validMoves = new HashSet<ChessMove>();
         var piece = board.getPiece(startPosition);
-        if (piece != null) {
-            var possibleMoves = piece.pieceMoves(board, startPosition);
-
-            // Make sure none of the possible moves are illegal.
-            for (var move : possibleMoves) {
-                if (board.isMoveLegal(move)) {
-                    validMoves.add(move);
-                }
-            }
+        if (piece == null) {
+            return new HashSet<>();
         }
-        return validMoves;
+        var fromMask = Bitboards.bit(Bitboards.square(startPosition));
+        return new HashSet<>(MoveGenerator.legalMoves(board, piece.getTeamColor(), fromMask));
+    }
+
+    /**
+     * Gets every legal move for the team whose turn it is
+     *
+     * @return all legal moves, or an empty collection if the team is checkmated or stalemated
+     */
+    public Collection<ChessMove> allLegalMoves() {
+        return MoveGenerator.legalMoves(board, turn);
     }
 
     /**
@@ -80,16 +143,22 @@ public class ChessGame {
      */
     public void makeMove(ChessMove move) throws InvalidMoveException {
         var piece = board.getPiece(move.getStartPosition());
-        if (piece != null) {
-            if (piece.getTeamColor() == turn) {
-                var validMoves = piece.pieceMoves(board, move.getStartPosition());
-                if (validMoves.contains(move)) {
-                    if (board.isMoveLegal(move)) {
-                        board.movePiece(move);
-                        turn = (turn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE);
-                        return;
-                    }
+        if (piece != null && piece.getTeamColor() == turn) {
+            moveBuffer.clear();
+            MoveGenerator.generate(board, turn, Bitboards.bit(Bitboards.square(move.getStartPosition())), moveBuffer);
+            if (moveBuffer.contains(board.encode(move))) {
+                var irreversible = piece.getPieceType() == ChessPiece.PieceType.PAWN ||
+                        board.getPiece(move.getEndPosition()) != null;
+                if (positionKeys.isEmpty()) {
+                    positionKeys.add(zobristKey());
+                }
+                board.movePiece(move);
+                if (turn == TeamColor.BLACK) {
+                    fullmoveNumber++;
                 }
+                turn = (turn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE);
+                recordPosition(irreversible);
+                return;
             }
         }
 
@@ -103,9 +172,7 @@ public class ChessGame {
      * @return True if the specified team is in check
      */
     public boolean isInCheck(TeamColor teamColor) {
-        var king = board.getPlacement(teamColor, ChessPiece.PieceType.KING);
-
-        return king.isAttacked(board);
+        return board.isInCheck(teamColor);
     }
 
     /**
@@ -115,27 +182,7 @@ public class ChessGame {
      * @return True if the specified team is in checkmate
      */
     public boolean isInCheckmate(TeamColor teamColor) {
-        var king = board.getPlacement(teamColor, ChessPiece.PieceType.KING);
-
-        // Is the king being attacked?
-        if (!king.isAttacked(board)) {
-            return false;
-        }
-
-        // Try every move on the board and see if it gets us out of this.
-        for (var placement : board.collection()) {
-            if (placement.getPiece().getTeamColor() == teamColor) {
-                for (var move : placement.pieceMoves(board)) {
-                    ChessBoard newBoard = new ChessBoard(board);
-                    newBoard.movePiece(move);
-                    var kingPlacement = newBoard.getPlacement(teamColor, ChessPiece.PieceType.KING);
-                    if (!kingPlacement.isAttacked(newBoard)) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+        return isInCheck(teamColor) && !hasLegalMoves(teamColor);
     }
 
     /**
@@ -146,20 +193,129 @@ public class ChessGame {
      * @return True if the specified team is in stalemate, otherwise false
      */
     public boolean isInStalemate(TeamColor teamColor) {
-        // Is the king being attacked?
-        var king = board.getPlacement(teamColor, ChessPiece.PieceType.KING);
-        if (king.isAttacked(board)) {
+        return !isInCheck(teamColor) && !hasLegalMoves(teamColor);
+    }
+
+    /**
+     * Evaluates check, checkmate, stalemate and the automatic draws for the team whose turn it
+     * is in one pass: a single attack query on the king, at most one run of the move generator,
+     * and constant time lookups for repetition, the halfmove clock and the material left.
+     * Checkmate takes precedence over the draws.
+     *
+     * @return the status of the game for the team to move
+     */
+    public GameStatus getStatus() {
+        var inCheck = isInCheck(turn);
+        if (!hasLegalMoves(turn)) {
+            return inCheck ? GameStatus.CHECKMATE : GameStatus.STALEMATE;
+        }
+        if (isThreefoldRepetition()) {
+            return GameStatus.THREEFOLD_REPETITION;
+        }
+        if (halfmoveClock >= 100) {
+            return GameStatus.FIFTY_MOVE_RULE;
+        }
+        if (board.hasInsufficientMaterial()) {
+            return GameStatus.INSUFFICIENT_MATERIAL;
+        }
+        return inCheck ? GameStatus.CHECK : GameStatus.IN_PROGRESS;
+    }
+
+    /**
+     * @return the number of half-moves since the last capture or pawn move
+     */
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     * @return true if the current position, with the same side to move, castling rights and en
+     * passant possibilities, has occurred at least three times
+     */
+    public boolean isThreefoldRepetition() {
+        if (positionKeys.isEmpty()) {
             return false;
         }
-        // Does the player have any valid moves?
-        for (var placement : board.collection()) {
-            if (placement.getPiece().getTeamColor() == teamColor) {
-                if (!validMoves(placement.getPos()).isEmpty()) {
-                    return false;
-                }
-            }
+        for (; counted < positionKeys.size(); counted++) {
+            repetitions.merge(positionKeys.get(counted), 1, Integer::sum);
+        }
+        return repetitions.get(positionKeys.getLast()) >= 3;
+    }
+
+    /**
+     * @return the number of the current full move, starting at 1
+     */
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     * @return the number of half-moves played, counted from the fullmove number and whose turn it is
+     */
+    public int getPlyCount() {
+        return (fullmoveNumber - 1) * 2 + (turn == TeamColor.BLACK ? 1 : 0);
+    }
+
+    /**
+     * Creates a game from a position in Forsyth-Edwards Notation. The board's history starts empty.
+     *
+     * @param fen the position, e.g. {@code rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1}
+     * @return the game
+     * @throws IllegalArgumentException if fen is not valid
+     */
+    public static ChessGame fromFen(String fen) {
+        var game = new ChessGame();
+        Fen.parse(fen, game);
+        return game;
+    }
+
+    /**
+     * @return the position in Forsyth-Edwards Notation
+     */
+    public String toFen() {
+        return Fen.format(this);
+    }
+
+    List<Long> positionKeys() {
+        return positionKeys;
+    }
+
+    void setPosition(ChessBoard board, TeamColor turn, int halfmoveClock, int fullmoveNumber) {
+        this.board = board;
+        this.turn = turn;
+        resetPositionHistory();
+        this.halfmoveClock = halfmoveClock;
+        this.fullmoveNumber = fullmoveNumber;
+    }
+
+    private void recordPosition(boolean irreversible) {
+        if (irreversible) {
+            resetPositionHistory();
+        } else {
+            halfmoveClock++;
         }
-        return true;
+        positionKeys.add(zobristKey());
+    }
+
+    private void resetPositionHistory() {
+        halfmoveClock = 0;
+        positionKeys.clear();
+        repetitions.clear();
+        counted = 0;
+    }
+
+    private boolean hasLegalMoves(TeamColor teamColor) {
+        moveBuffer.clear();
+        MoveGenerator.generate(board, teamColor, -1L, moveBuffer);
+        return !moveBuffer.isEmpty();
+    }
+
+    /**
+     * @return the board's {@link ChessBoard#zobristKey() Zobrist key} combined with whose turn it is
+     */
+    public long zobristKey() {
+        var key = board.zobristKey();
+        return turn == TeamColor.BLACK ? key ^ Zobrist.blackToMove() : key;
     }
 
     /**
@@ -169,6 +325,7 @@ public class ChessGame {
      */
     public void setBoard(ChessBoard board) {
         this.board = board;
+        resetPositionHistory();
     }
 
     /**
@@ -206,8 +363,33 @@ public class ChessGame {
     }
 
 
+    /**
+     * Reads a game written by {@link #toString()}. Games stored by the original board, which
+     * kept its pieces in a squares array, are converted as they are read.
+     */
     public static ChessGame fromString(String serializedGame) {
-        return new Gson().fromJson(serializedGame, ChessGame.class);
+        var json = JsonParser.parseString(serializedGame).getAsJsonObject();
+        if (LegacyGameJson.isLegacy(json)) {
+            return LegacyGameJson.migrate(json);
+        }
+        return new Gson().fromJson(json, ChessGame.class);
+    }
+
+    /**
+     * @return the game in its compact binary form, see {@link GameCodec}
+     */
+    public byte[] toBytes() {
+        return GameCodec.encode(this);
+    }
+
+    /**
+     * Reads a game written by {@link #toBytes()}. Games stored as JSON are also accepted, so
+     * storage can move from one form to the other as games are rewritten.
+     *
+     * @throws IllegalArgumentException if data is not a stored game
+     */
+    public static ChessGame fromBytes(byte[] data) {
+        return GameCodec.decode(data);
     }
 
 
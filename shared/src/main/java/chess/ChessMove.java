@@ -31,8 +31,8 @@ public class ChessMove {
             int colEnd = notation.charAt(2) - 'a' + 1;
             int rowEnd = notation.charAt(3) - '1' + 1;
 
-            startPosition = new ChessPosition(rowStart, colStart);
-            endPosition = new ChessPosition(rowEnd, colEnd);
+            startPosition = ChessPosition.of(rowStart, colStart);
+            endPosition = ChessPosition.of(rowEnd, colEnd);
             if (notation.length() == 5) {
                 promotionPiece = switch (notation.charAt(4)) {
                     case 'q' -> ChessPiece.PieceType.QUEEN;
@@ -94,6 +94,7 @@ public class ChessMove {
 
     @Override
     public int hashCode() {
-        return Objects.hash(startPosition, endPosition, promotionPiece);
+        var result = 31 * Objects.hashCode(startPosition) + Objects.hashCode(endPosition);
+        return 31 * result + (promotionPiece == null ? 0 : promotionPiece.ordinal() + 1);
     }
 }
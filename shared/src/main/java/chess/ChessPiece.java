@@ -4,7 +4,6 @@ import chess.rules.Rules;
 
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Objects;
 
 import static chess.ChessGame.TeamColor;
 
@@ -19,6 +18,17 @@ public class ChessPiece {
     private final TeamColor pieceColor;
     private final PieceType type;
 
+    private static final int TYPE_COUNT = PieceType.values().length;
+    private static final ChessPiece[] PIECES = new ChessPiece[TeamColor.values().length * TYPE_COUNT];
+
+    static {
+        for (var color : TeamColor.values()) {
+            for (var type : PieceType.values()) {
+                PIECES[color.ordinal() * TYPE_COUNT + type.ordinal()] = new ChessPiece(color, type);
+            }
+        }
+    }
+
     public ChessPiece(TeamColor pieceColor, PieceType type) {
         this.pieceColor = pieceColor;
         this.type = type;
@@ -29,6 +39,14 @@ public class ChessPiece {
         this.type = copy.type;
     }
 
+    /**
+     * Returns the shared instance for a color and type. Pieces are immutable, so the engine
+     * hands out these instead of allocating a new one every time.
+     */
+    public static ChessPiece of(TeamColor pieceColor, PieceType type) {
+        return PIECES[pieceColor.ordinal() * TYPE_COUNT + type.ordinal()];
+    }
+
     /**
      * The various different chess piece options
      */
@@ -89,6 +107,6 @@ public class ChessPiece {
 
     @Override
     public int hashCode() {
-        return Objects.hash(pieceColor, type);
+        return 31 * (31 + pieceColor.ordinal()) + type.ordinal();
     }
 }
@@ -1,7 +1,6 @@
 package chess;
 
 import java.util.Locale;
-import java.util.Objects;
 
 /**
  * Represents a single square position on a chess board
@@ -14,11 +13,31 @@ public class ChessPosition {
     private final int row;
     private final int col;
 
+    private static final ChessPosition[] POSITIONS = new ChessPosition[64];
+
+    static {
+        for (var i = 0; i < POSITIONS.length; i++) {
+            POSITIONS[i] = new ChessPosition((i >>> 3) + 1, (i & 7) + 1);
+        }
+    }
+
     public ChessPosition(int row, int col) {
         this.row = row;
         this.col = col;
     }
 
+    /**
+     * Returns the shared instance for a square on the board. Positions are immutable, so the
+     * engine hands out these instead of allocating a new one every time. Anything off the
+     * board gets a fresh instance.
+     */
+    public static ChessPosition of(int row, int col) {
+        if (row >= 1 && row <= 8 && col >= 1 && col <= 8) {
+            return POSITIONS[(row - 1) * 8 + (col - 1)];
+        }
+        return new ChessPosition(row, col);
+    }
+
 
     public ChessPosition(String notation) throws Exception {
         notation = notation.toLowerCase(Locale.ROOT);
@@ -66,6 +85,6 @@ public class ChessPosition {
 
     @Override
     public int hashCode() {
-        return Objects.hash(row, col);
+        return 31 * (31 + row) + col;
     }
 }
@@ -0,0 +1,173 @@
+package chess;
+
+import static chess.ChessGame.TeamColor;
+import static chess.ChessPiece.PieceType;
+
+/**
+ * Reads and writes Forsyth-Edwards Notation, e.g. the start position is
+ * {@code rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1}. The six fields are the piece
+ * placement from the eighth row down, the side to move, the castling rights, the en passant
+ * square, the halfmove clock and the fullmove number.
+ */
+final class Fen {
+    private static final String PIECE_LETTERS = "kqbnrp";
+    private static final String CASTLING_LETTERS = "KQkq";
+    private static final int[] CASTLING_RIGHTS = {ChessBoard.CASTLE_WHITE_KING_SIDE, ChessBoard.CASTLE_WHITE_QUEEN_SIDE,
+            ChessBoard.CASTLE_BLACK_KING_SIDE, ChessBoard.CASTLE_BLACK_QUEEN_SIDE};
+
+    private Fen() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+    static String format(ChessGame game) {
+        var board = game.getBoard();
+        var fen = new StringBuilder(90);
+        for (var row = 7; row >= 0; row--) {
+            var empty = 0;
+            for (var col = 0; col < 8; col++) {
+                var piece = board.getPiece(row * 8 + col);
+                if (piece == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                var letter = PIECE_LETTERS.charAt(piece.getPieceType().ordinal());
+                fen.append(piece.getTeamColor() == TeamColor.WHITE ? Character.toUpperCase(letter) : letter);
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (row > 0) {
+                fen.append('/');
+            }
+        }
+
+        fen.append(game.getTeamTurn() == TeamColor.WHITE ? " w " : " b ");
+        if (board.castlingRights == 0) {
+            fen.append('-');
+        }
+        for (var i = 0; i < CASTLING_RIGHTS.length; i++) {
+            if ((board.castlingRights & CASTLING_RIGHTS[i]) != 0) {
+                fen.append(CASTLING_LETTERS.charAt(i));
+            }
+        }
+        fen.append(' ');
+        fen.append(board.enPassantSquare == ChessBoard.NO_SQUARE ? "-" : Bitboards.position(board.enPassantSquare).toString());
+        fen.append(' ').append(game.getHalfmoveClock());
+        fen.append(' ').append(game.getFullmoveNumber());
+        return fen.toString();
+    }
+
+    /**
+     * Fills in game from fen. The move counters are optional, as they are in many FEN sources.
+     * Besides the syntax, each side must have exactly one king, each castling right needs its
+     * king and rook on their starting squares, and the en passant square must be behind a pawn
+     * of the side that just moved.
+     *
+     * @throws IllegalArgumentException if fen is not valid
+     */
+    static void parse(String fen, ChessGame game) {
+        var fields = fen.trim().split("\\s+");
+        if (fields.length < 4 || fields.length > 6) {
+            throw invalid(fen);
+        }
+
+        var board = new ChessBoard();
+        var rows = fields[0].split("/");
+        if (rows.length != 8) {
+            throw invalid(fen);
+        }
+        for (var i = 0; i < rows.length; i++) {
+            var row = 8 - i;
+            var col = 1;
+            for (var c : rows[i].toCharArray()) {
+                if (c >= '1' && c <= '8') {
+                    col += c - '0';
+                    continue;
+                }
+                var type = PIECE_LETTERS.indexOf(Character.toLowerCase(c));
+                if (type < 0 || col > 8) {
+                    throw invalid(fen);
+                }
+                var color = Character.isUpperCase(c) ? TeamColor.WHITE : TeamColor.BLACK;
+                board.addPiece(ChessPosition.of(row, col++), ChessPiece.of(color, PieceType.values()[type]));
+            }
+            if (col != 9) {
+                throw invalid(fen);
+            }
+        }
+
+        for (var color : TeamColor.values()) {
+            if (Long.bitCount(board.pieces(color, PieceType.KING)) != 1) {
+                throw invalid(fen);
+            }
+        }
+
+        TeamColor turn = switch (fields[1]) {
+            case "w" -> TeamColor.WHITE;
+            case "b" -> TeamColor.BLACK;
+            default -> throw invalid(fen);
+        };
+
+        board.castlingRights = 0;
+        if (!fields[2].equals("-")) {
+            for (var c : fields[2].toCharArray()) {
+                var right = CASTLING_LETTERS.indexOf(c);
+                if (right < 0 || (board.castlingRights & CASTLING_RIGHTS[right]) != 0 || !canCastle(board, right)) {
+                    throw invalid(fen);
+                }
+                board.castlingRights |= CASTLING_RIGHTS[right];
+            }
+        }
+
+        board.enPassantSquare = ChessBoard.NO_SQUARE;
+        if (!fields[3].equals("-")) {
+            ChessPosition square;
+            try {
+                square = new ChessPosition(fields[3]);
+            } catch (Exception ex) {
+                throw invalid(fen);
+            }
+            // The pawn that just stepped two rows belongs to the side that isn't moving now.
+            var mover = turn == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+            var pawnRow = turn == TeamColor.WHITE ? 5 : 4;
+            if (square.getRow() != (turn == TeamColor.WHITE ? 6 : 3) ||
+                    (board.pieces(mover, PieceType.PAWN) & Bitboards.bit(pawnRow, square.getColumn())) == 0) {
+                throw invalid(fen);
+            }
+            board.enPassantSquare = Bitboards.square(square);
+        }
+
+        int halfmoveClock;
+        int fullmoveNumber;
+        try {
+            halfmoveClock = fields.length > 4 ? Integer.parseInt(fields[4]) : 0;
+            fullmoveNumber = fields.length > 5 ? Integer.parseInt(fields[5]) : 1;
+        } catch (NumberFormatException ex) {
+            throw invalid(fen);
+        }
+        if (halfmoveClock < 0 || fullmoveNumber < 1) {
+            throw invalid(fen);
+        }
+        game.setPosition(board, turn, halfmoveClock, fullmoveNumber);
+    }
+
+    /**
+     * @return true if the king and the rook that a castling right, by index into CASTLING_LETTERS,
+     * depends on are still on their starting squares
+     */
+    private static boolean canCastle(ChessBoard board, int right) {
+        var color = right < 2 ? TeamColor.WHITE : TeamColor.BLACK;
+        var row = color == TeamColor.WHITE ? 1 : 8;
+        var rookCol = right % 2 == 0 ? 8 : 1;
+        return (board.pieces(color, PieceType.KING) & Bitboards.bit(row, 5)) != 0 &&
+                (board.pieces(color, PieceType.ROOK) & Bitboards.bit(row, rookCol)) != 0;
+    }
+
+    private static IllegalArgumentException invalid(String fen) {
+        return new IllegalArgumentException(String.format("Invalid FEN: %s", fen));
+    }
+}
@@ -0,0 +1,153 @@
+package chess;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+import static chess.ChessGame.TeamColor;
+import static chess.ChessPiece.PieceType;
+
+/**
+ * A compact, versioned binary form of a {@link ChessGame}, used where games are stored.
+ * <p>
+ * Version 2 is laid out as:
+ * <ul>
+ * <li>the version byte</li>
+ * <li>the occupied squares as an 8 byte mask, followed by one 4 bit piece index per occupied
+ * square, lowest square first, two to a byte</li>
+ * <li>one byte with the side to move in bit 0 and the castling rights above it</li>
+ * <li>one byte with the en passant square plus one, or 0 for none</li>
+ * <li>the halfmove clock and fullmove number as varints</li>
+ * <li>the number of repetition keys as a varint, then 8 bytes per key</li>
+ * </ul>
+ * A new game is 30 bytes, since no repetition keys are kept until the first move, and no game
+ * is more than a few hundred, since the keys only go back to the last capture or pawn move.
+ * Version 1 also stored the move history, a varint count and 2 bytes per move, between the
+ * move counters and the keys, which made a new game 31 bytes; the history is skipped when read.
+ * Data that starts with '{' is a game stored as JSON before this format existed and is read
+ * with {@link ChessGame#fromString(String)}.
+ */
+final class GameCodec {
+    private static final int VERSION = 2;
+    private static final int VERSION_WITH_HISTORY = 1;
+    private static final PieceType[] TYPES = PieceType.values();
+
+    private GameCodec() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+    static byte[] encode(ChessGame game) {
+        var board = game.getBoard();
+        var keys = game.positionKeys();
+        var bytes = new ByteArrayOutputStream(48 + keys.size() * 8);
+        try (var out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+
+            var occupied = board.occupancy();
+            out.writeLong(occupied);
+            var pending = -1;
+            for (var mask = occupied; mask != 0; mask &= mask - 1) {
+                var square = Long.numberOfTrailingZeros(mask);
+                var piece = board.getPiece(square);
+                var index = piece.getTeamColor().ordinal() * TYPES.length + piece.getPieceType().ordinal();
+                if (pending < 0) {
+                    pending = index;
+                } else {
+                    out.writeByte(pending | (index << 4));
+                    pending = -1;
+                }
+            }
+            if (pending >= 0) {
+                out.writeByte(pending);
+            }
+
+            out.writeByte((game.getTeamTurn() == TeamColor.BLACK ? 1 : 0) | (board.castlingRights << 1));
+            out.writeByte(board.enPassantSquare + 1);
+            writeVarint(out, game.getHalfmoveClock());
+            writeVarint(out, game.getFullmoveNumber());
+
+            writeVarint(out, keys.size());
+            for (var key : keys) {
+                out.writeLong(key);
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if data is not a stored game
+     */
+    static ChessGame decode(byte[] data) {
+        if (data.length > 0 && data[0] == '{') {
+            return ChessGame.fromString(new String(data, StandardCharsets.UTF_8));
+        }
+        try (var in = new DataInputStream(new ByteArrayInputStream(data))) {
+            var version = in.readUnsignedByte();
+            if (version != VERSION && version != VERSION_WITH_HISTORY) {
+                throw new IllegalArgumentException(String.format("Unknown game encoding version %d", version));
+            }
+
+            var board = new ChessBoard();
+            var occupied = in.readLong();
+            var packed = 0;
+            var count = 0;
+            for (var mask = occupied; mask != 0; mask &= mask - 1, count++) {
+                if ((count & 1) == 0) {
+                    packed = in.readUnsignedByte();
+                }
+                var index = (count & 1) == 0 ? packed & 15 : packed >>> 4;
+                if (index >= TeamColor.values().length * TYPES.length) {
+                    throw new IllegalArgumentException(String.format("Invalid piece %d in stored game", index));
+                }
+                var piece = ChessPiece.of(TeamColor.values()[index / TYPES.length], TYPES[index % TYPES.length]);
+                board.addPiece(Bitboards.position(Long.numberOfTrailingZeros(mask)), piece);
+            }
+
+            var state = in.readUnsignedByte();
+            var turn = (state & 1) == 0 ? TeamColor.WHITE : TeamColor.BLACK;
+            board.castlingRights = (state >>> 1) & ChessBoard.ALL_CASTLING_RIGHTS;
+            var enPassant = in.readUnsignedByte() - 1;
+            if (enPassant < ChessBoard.NO_SQUARE || enPassant >= 64) {
+                throw new IllegalArgumentException(String.format("Invalid en passant square %d in stored game", enPassant));
+            }
+            board.enPassantSquare = enPassant;
+            var halfmoveClock = readVarint(in);
+            var fullmoveNumber = readVarint(in);
+
+            if (version == VERSION_WITH_HISTORY) {
+                in.skipNBytes(readVarint(in) * 2L);
+            }
+
+            var game = new ChessGame();
+            game.setPosition(board, turn, halfmoveClock, fullmoveNumber);
+            var keys = readVarint(in);
+            for (var i = 0; i < keys; i++) {
+                game.positionKeys().add(in.readLong());
+            }
+            return game;
+        } catch (IOException ex) {
+            throw new IllegalArgumentException("Stored game is truncated", ex);
+        }
+    }
+
+    private static void writeVarint(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarint(DataInputStream in) throws IOException {
+        var value = 0;
+        for (var shift = 0; shift < 32; shift += 7) {
+            var b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Invalid varint in stored game");
+    }
+}
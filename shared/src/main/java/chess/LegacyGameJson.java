@@ -0,0 +1,81 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+
+import static chess.ChessGame.TeamColor;
+import static chess.ChessPiece.PieceType;
+
+/**
+ * Reads games stored as JSON by the original board, which kept its pieces in an 8x8
+ * {@code squares} array and had no castling rights, en passant square or move counters.
+ */
+final class LegacyGameJson {
+    private LegacyGameJson() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+    static boolean isLegacy(JsonObject json) {
+        var board = json.getAsJsonObject("board");
+        return board != null && board.has("squares");
+    }
+
+    static ChessGame migrate(JsonObject json) {
+        var gson = new Gson();
+        var boardJson = json.getAsJsonObject("board");
+        var squares = gson.fromJson(boardJson.get("squares"), ChessPiece[][].class);
+        var history = boardJson.has("history") ? gson.fromJson(boardJson.get("history"), ChessMove[].class) : new ChessMove[0];
+        var turn = json.has("turn") ? gson.fromJson(json.get("turn"), TeamColor.class) : TeamColor.WHITE;
+
+        var board = new ChessBoard();
+        for (var row = 0; row < 8; row++) {
+            for (var col = 0; col < 8; col++) {
+                var piece = squares[row][col];
+                if (piece != null) {
+                    board.addPiece(ChessPosition.of(row + 1, col + 1), ChessPiece.of(piece.getTeamColor(), piece.getPieceType()));
+                }
+            }
+        }
+
+        // Replaying the history from the start restores everything the old format didn't store.
+        var replayed = replay(history);
+        if (replayed != null && replayed.getTeamTurn() == turn && replayed.getBoard().equals(board)) {
+            return replayed;
+        }
+
+        // Otherwise keep the stored pieces and work out what we can from the history.
+        var rights = ChessBoard.ALL_CASTLING_RIGHTS;
+        for (var move : history) {
+            rights &= ChessBoard.CASTLING_RIGHTS_KEPT[Bitboards.square(move.getStartPosition())] &
+                    ChessBoard.CASTLING_RIGHTS_KEPT[Bitboards.square(move.getEndPosition())];
+        }
+        board.castlingRights = rights;
+        if (history.length > 0) {
+            var last = history[history.length - 1];
+            var moved = board.getPiece(last.getEndPosition());
+            var rows = last.getEndPosition().getRow() - last.getStartPosition().getRow();
+            if (moved != null && moved.getPieceType() == PieceType.PAWN && Math.abs(rows) == 2) {
+                board.enPassantSquare = Bitboards.square(last.getStartPosition()) + rows * 4;
+            }
+        }
+        for (var move : history) {
+            board.history.add(move);
+        }
+
+        var game = new ChessGame();
+        game.setPosition(board, turn, 0, history.length / 2 + 1);
+        return game;
+    }
+
+    private static ChessGame replay(ChessMove[] history) {
+        var game = new ChessGame();
+        try {
+            for (var move : history) {
+                game.makeMove(move);
+            }
+        } catch (InvalidMoveException | RuntimeException ex) {
+            return null;
+        }
+        return game;
+    }
+}
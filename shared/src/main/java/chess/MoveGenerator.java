@@ -0,0 +1,210 @@
+package chess;
+
+import java.util.List;
+
+import static chess.ChessGame.TeamColor;
+import static chess.ChessPiece.PieceType;
+
+/**
+ * Generates the legal moves for one team in a single pass over the position.
+ * <p>
+ * Rather than generating every pseudo-legal move and then playing each one to see if it leaves
+ * the king attacked, the generator first works out which enemy pieces give check and which of
+ * the team's pieces are pinned to their king. Each piece is then only offered squares that keep
+ * the king safe: when in check, squares that capture or block the checker; when pinned, squares
+ * along the pin. In double check only the king may move. En passant is the one move still
+ * verified by playing it, because removing two pawns from the same row can expose the king in a
+ * way the pin analysis does not see.
+ */
+public final class MoveGenerator {
+    private static final PieceType[] PROMOTIONS = {PieceType.QUEEN, PieceType.BISHOP, PieceType.ROOK, PieceType.KNIGHT};
+
+    private MoveGenerator() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+    static List<ChessMove> legalMoves(ChessBoard board, TeamColor color) {
+        return legalMoves(board, color, -1L);
+    }
+
+    /**
+     * @param fromMask only moves starting on these squares are generated
+     */
+    static List<ChessMove> legalMoves(ChessBoard board, TeamColor color, long fromMask) {
+        var moves = new MoveList();
+        generate(board, color, fromMask, moves);
+        return moves.toChessMoves();
+    }
+
+    /**
+     * Adds the team's legal moves, in {@link PackedMove packed} form, to moves. Reusing the same
+     * list between calls avoids allocating anything per move.
+     *
+     * @param fromMask only moves starting on these squares are generated
+     */
+    public static void generate(ChessBoard board, TeamColor color, long fromMask, MoveList moves) {
+        var ours = board.occupancy(color);
+        var king = board.kingSquare(color);
+
+        var pinned = 0L;
+        var checkMask = -1L;
+        if (king != ChessBoard.NO_SQUARE) {
+            var checkers = board.attackers(king, color);
+            pinned = pinnedPieces(board, color, king);
+            if (Long.bitCount(checkers) > 1) {
+                checkMask = 0;
+            } else if (checkers != 0) {
+                checkMask = Attacks.between(king, Long.numberOfTrailingZeros(checkers)) | checkers;
+            }
+
+            if ((fromMask & Bitboards.bit(king)) != 0) {
+                addKingMoves(board, color, king, moves);
+                if (checkers == 0) {
+                    addCastleMoves(board, color, king, moves);
+                }
+            }
+        }
+        if (checkMask == 0) {
+            return;
+        }
+
+        var occupied = board.occupancy();
+        for (var type : new PieceType[]{PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN}) {
+            for (var pieces = board.pieces(color, type) & fromMask; pieces != 0; pieces &= pieces - 1) {
+                var from = Long.numberOfTrailingZeros(pieces);
+                var targets = switch (type) {
+                    case KNIGHT -> Attacks.knight(from);
+                    case BISHOP -> Attacks.bishop(from, occupied);
+                    case ROOK -> Attacks.rook(from, occupied);
+                    default -> Attacks.queen(from, occupied);
+                };
+                addMoves(from, targets & ~ours & checkMask & pinRay(king, from, pinned), moves);
+            }
+        }
+
+        addPawnMoves(board, color, fromMask, king, pinned, checkMask, moves);
+    }
+
+    /**
+     * A pinned piece may only move along the line through its king and the pinning piece.
+     */
+    private static long pinRay(int king, int from, long pinned) {
+        return (pinned & Bitboards.bit(from)) != 0 ? Attacks.line(king, from) : -1L;
+    }
+
+    /**
+     * Finds the team's pieces that are the only thing standing between their king and an enemy
+     * slider on the same line.
+     */
+    private static long pinnedPieces(ChessBoard board, TeamColor color, int king) {
+        var enemy = other(color);
+        var theirs = board.occupancy(enemy);
+        var queens = board.pieces(enemy, PieceType.QUEEN);
+        var snipers = (Attacks.rook(king, theirs) & (board.pieces(enemy, PieceType.ROOK) | queens)) |
+                (Attacks.bishop(king, theirs) & (board.pieces(enemy, PieceType.BISHOP) | queens));
+
+        var pinned = 0L;
+        var occupied = board.occupancy();
+        for (; snipers != 0; snipers &= snipers - 1) {
+            var blockers = Attacks.between(king, Long.numberOfTrailingZeros(snipers)) & occupied;
+            if (Long.bitCount(blockers) == 1) {
+                pinned |= blockers & board.occupancy(color);
+            }
+        }
+        return pinned;
+    }
+
+    private static void addKingMoves(ChessBoard board, TeamColor color, int king, MoveList moves) {
+        // The king is removed from the board so that it can't hide behind itself from a slider.
+        var occupied = board.occupancy() ^ Bitboards.bit(king);
+        for (var targets = Attacks.king(king) & ~board.occupancy(color); targets != 0; targets &= targets - 1) {
+            var to = Long.numberOfTrailingZeros(targets);
+            if (!board.isAttacked(to, color, occupied)) {
+                moves.add(PackedMove.encode(king, to, null, PackedMove.NORMAL));
+            }
+        }
+    }
+
+    private static void addCastleMoves(ChessBoard board, TeamColor color, int king, MoveList moves) {
+        var row = color == TeamColor.WHITE ? 1 : 8;
+        if (king != Bitboards.square(row, 5)) {
+            return;
+        }
+        var occupied = board.occupancy();
+        var rooks = board.pieces(color, PieceType.ROOK);
+        if (board.hasCastlingRight(color, true) && (rooks & Bitboards.bit(row, 8)) != 0 &&
+                (occupied & (Bitboards.bit(row, 6) | Bitboards.bit(row, 7))) == 0 &&
+                !board.isAttacked(Bitboards.square(row, 6), color) &&
+                !board.isAttacked(Bitboards.square(row, 7), color)) {
+            moves.add(PackedMove.encode(king, Bitboards.square(row, 7), null, PackedMove.CASTLE));
+        }
+        if (board.hasCastlingRight(color, false) && (rooks & Bitboards.bit(row, 1)) != 0 &&
+                (occupied & (Bitboards.bit(row, 2) | Bitboards.bit(row, 3) | Bitboards.bit(row, 4))) == 0 &&
+                !board.isAttacked(Bitboards.square(row, 4), color) &&
+                !board.isAttacked(Bitboards.square(row, 3), color)) {
+            moves.add(PackedMove.encode(king, Bitboards.square(row, 3), null, PackedMove.CASTLE));
+        }
+    }
+
+    private static void addPawnMoves(ChessBoard board, TeamColor color, long fromMask, int king, long pinned,
+                                     long checkMask, MoveList moves) {
+        var white = color == TeamColor.WHITE;
+        var forward = white ? 8 : -8;
+        var startRow = white ? 1 : 6;
+        var lastRow = white ? 7 : 0;
+        var empty = ~board.occupancy();
+        var theirs = board.occupancy(other(color));
+
+        for (var pawns = board.pieces(color, PieceType.PAWN) & fromMask; pawns != 0; pawns &= pawns - 1) {
+            var from = Long.numberOfTrailingZeros(pawns);
+            var targets = Attacks.pawn(color, from) & theirs;
+            var one = from + forward;
+            if (one >= 0 && one < 64 && (empty & Bitboards.bit(one)) != 0) {
+                targets |= Bitboards.bit(one);
+                var two = one + forward;
+                if ((from >>> 3) == startRow && (empty & Bitboards.bit(two)) != 0) {
+                    targets |= Bitboards.bit(two);
+                }
+            }
+
+            for (targets &= checkMask & pinRay(king, from, pinned); targets != 0; targets &= targets - 1) {
+                var to = Long.numberOfTrailingZeros(targets);
+                if ((to >>> 3) == lastRow) {
+                    for (var promotion : PROMOTIONS) {
+                        moves.add(PackedMove.encode(from, to, promotion, PackedMove.NORMAL));
+                    }
+                } else {
+                    var flag = Math.abs(to - from) == 16 ? PackedMove.DOUBLE_STEP : PackedMove.NORMAL;
+                    moves.add(PackedMove.encode(from, to, null, flag));
+                }
+            }
+
+            addEnPassantMove(board, color, from, moves);
+        }
+    }
+
+    private static void addEnPassantMove(ChessBoard board, TeamColor color, int from, MoveList moves) {
+        var target = board.enPassantSquare();
+        var targetRow = color == TeamColor.WHITE ? 5 : 2;
+        if (target != ChessBoard.NO_SQUARE && (target >>> 3) == targetRow &&
+                (Attacks.pawn(color, from) & Bitboards.bit(target)) != 0) {
+            var move = PackedMove.encode(from, target, null, PackedMove.EN_PASSANT);
+            board.makeMove(move);
+            var legal = !board.isInCheck(color);
+            board.unmakeMove();
+            if (legal) {
+                moves.add(move);
+            }
+        }
+    }
+
+    private static void addMoves(int from, long targets, MoveList moves) {
+        for (; targets != 0; targets &= targets - 1) {
+            moves.add(PackedMove.encode(from, Long.numberOfTrailingZeros(targets), null, PackedMove.NORMAL));
+        }
+    }
+
+    private static TeamColor other(TeamColor color) {
+        return color == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+}
@@ -0,0 +1,55 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A growable buffer of {@link PackedMove packed moves}. Move generation appends to a list that
+ * the caller clears and reuses, so generating moves doesn't allocate once the buffer has grown
+ * to fit.
+ */
+public final class MoveList {
+    private int[] moves = new int[64];
+    private int size;
+
+    public void add(int move) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, size * 2);
+        }
+        moves[size++] = move;
+    }
+
+    public int get(int index) {
+        return moves[index];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    public boolean contains(int move) {
+        for (var i = 0; i < size; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public List<ChessMove> toChessMoves() {
+        var result = new ArrayList<ChessMove>(size);
+        for (var i = 0; i < size; i++) {
+            result.add(PackedMove.toChessMove(moves[i]));
+        }
+        return result;
+    }
+}
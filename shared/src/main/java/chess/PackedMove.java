@@ -0,0 +1,53 @@
+package chess;
+
+import static chess.ChessPiece.PieceType;
+
+/**
+ * Encodes a move in a single int so that move generation and make/unmake don't allocate.
+ * <p>
+ * Bits 0-5 hold the start square, bits 6-11 the end square, bits 12-14 the promotion piece
+ * (0 for none, otherwise {@link PieceType#ordinal()} + 1) and bits 15-16 a flag saying whether
+ * the move is a pawn double step, an en passant capture or a castle. {@link ChessMove} is only
+ * created at the public API boundary.
+ */
+public final class PackedMove {
+    public static final int NORMAL = 0;
+    public static final int DOUBLE_STEP = 1;
+    public static final int EN_PASSANT = 2;
+    public static final int CASTLE = 3;
+
+    private static final PieceType[] TYPES = PieceType.values();
+
+    private PackedMove() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+    public static int encode(int from, int to, PieceType promotion, int flag) {
+        var promotionBits = promotion == null ? 0 : promotion.ordinal() + 1;
+        return from | (to << 6) | (promotionBits << 12) | (flag << 15);
+    }
+
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     * @return the promotion piece, or null if the move is not a promotion
+     */
+    public static PieceType promotion(int move) {
+        var promotionBits = (move >>> 12) & 7;
+        return promotionBits == 0 ? null : TYPES[promotionBits - 1];
+    }
+
+    public static int flag(int move) {
+        return (move >>> 15) & 3;
+    }
+
+    public static ChessMove toChessMove(int move) {
+        return new ChessMove(Bitboards.position(from(move)), Bitboards.position(to(move)), promotion(move));
+    }
+}
@@ -0,0 +1,160 @@
+package chess;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+import static chess.ChessGame.TeamColor;
+
+/**
+ * Counts the leaf nodes of the legal move tree to a fixed depth. The counts for standard
+ * positions are published, so a mismatch points at a move generation bug, and "divide" breaks
+ * the count down by first move to find which one.
+ * <p>
+ * The tree is split across a {@link ForkJoinPool}: every move near the root becomes its own task
+ * working on its own copy of the board, and idle threads steal subtrees from busy ones. Below
+ * {@link #SEQUENTIAL_DEPTH} a task walks its subtree on one board with make/unmake.
+ * <p>
+ * Run {@code java -cp shared.jar chess.Perft <depth> [<fen>]} to print the divide for a position,
+ * the start position by default.
+ */
+public final class Perft {
+    private static final int SEQUENTIAL_DEPTH = 3;
+
+    private Perft() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+    /**
+     * @return the number of move sequences of the given length from the game's position, using the common pool
+     */
+    public static long perft(ChessGame game, int depth) {
+        return perft(game, depth, ForkJoinPool.commonPool());
+    }
+
+    public static long perft(ChessGame game, int depth, ForkJoinPool pool) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("perft needs a depth of at least 0");
+        }
+        return pool.invoke(new PerftTask(new ChessBoard(game.getBoard()), game.getTeamTurn(), depth));
+    }
+
+    /**
+     * @return the perft count below each legal move from the game's position, in generation order
+     */
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth) {
+        return divide(game, depth, ForkJoinPool.commonPool());
+    }
+
+    public static Map<ChessMove, Long> divide(ChessGame game, int depth, ForkJoinPool pool) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("divide needs a depth of at least 1");
+        }
+        var board = game.getBoard();
+        var color = game.getTeamTurn();
+        var moves = new MoveList();
+        MoveGenerator.generate(board, color, -1L, moves);
+
+        var tasks = new ArrayList<PerftTask>();
+        for (var i = 0; i < moves.size(); i++) {
+            tasks.add(PerftTask.after(board, moves.get(i), color, depth - 1));
+        }
+        // Forked from inside the pool, so that all the root moves are searched at once.
+        pool.invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+
+        var result = new LinkedHashMap<ChessMove, Long>();
+        for (var i = 0; i < tasks.size(); i++) {
+            result.put(PackedMove.toChessMove(moves.get(i)), tasks.get(i).join());
+        }
+        return result;
+    }
+
+    public static void main(String[] args) {
+        var depth = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        var game = args.length > 1 ? ChessGame.fromFen(String.join(" ", Arrays.copyOfRange(args, 1, args.length))) : new ChessGame();
+        var start = System.nanoTime();
+        var total = 0L;
+        for (var entry : divide(game, depth).entrySet()) {
+            System.out.printf("%s: %d%n", entry.getKey(), entry.getValue());
+            total += entry.getValue();
+        }
+        var seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%nNodes searched: %d in %.2fs (%.0f nodes/s)%n", total, seconds, total / seconds);
+    }
+
+    private static final class PerftTask extends RecursiveTask<Long> {
+        private final ChessBoard board;
+        private final TeamColor color;
+        private final int depth;
+
+        private PerftTask(ChessBoard board, TeamColor color, int depth) {
+            this.board = board;
+            this.color = color;
+            this.depth = depth;
+        }
+
+        /**
+         * A task for the subtree below move, on its own copy of the board.
+         */
+        static PerftTask after(ChessBoard board, int move, TeamColor color, int depth) {
+            var copy = new ChessBoard(board);
+            copy.makeMove(move);
+            return new PerftTask(copy, other(color), depth);
+        }
+
+        @Override
+        protected Long compute() {
+            if (depth <= SEQUENTIAL_DEPTH) {
+                var moveLists = new MoveList[Math.max(depth, 1)];
+                for (var i = 0; i < moveLists.length; i++) {
+                    moveLists[i] = new MoveList();
+                }
+                return walk(board, color, depth, moveLists);
+            }
+
+            var moves = new MoveList();
+            MoveGenerator.generate(board, color, -1L, moves);
+            var tasks = new ArrayList<PerftTask>(moves.size());
+            for (var i = 0; i < moves.size(); i++) {
+                var task = after(board, moves.get(i), color, depth - 1);
+                task.fork();
+                tasks.add(task);
+            }
+            var nodes = 0L;
+            for (var task : tasks) {
+                nodes += task.join();
+            }
+            return nodes;
+        }
+    }
+
+    /**
+     * Counts the subtree on a single board, reusing one move list per ply.
+     */
+    private static long walk(ChessBoard board, TeamColor color, int depth, MoveList[] moveLists) {
+        if (depth == 0) {
+            return 1;
+        }
+        var moves = moveLists[depth - 1];
+        moves.clear();
+        MoveGenerator.generate(board, color, -1L, moves);
+        if (depth == 1) {
+            return moves.size();
+        }
+        var nodes = 0L;
+        for (var i = 0; i < moves.size(); i++) {
+            board.makeMove(moves.get(i));
+            nodes += walk(board, other(color), depth - 1, moveLists);
+            board.unmakeMove();
+        }
+        return nodes;
+    }
+
+    private static TeamColor other(TeamColor color) {
+        return color == TeamColor.WHITE ? TeamColor.BLACK : TeamColor.WHITE;
+    }
+}
@@ -0,0 +1,57 @@
+package chess;
+
+import java.util.SplittableRandom;
+
+/**
+ * Random keys for Zobrist hashing. A position's key is the XOR of one key per piece on a square,
+ * plus keys for the castling rights, the en passant file and the side to move. Because XOR undoes
+ * itself, moving a piece only takes two XORs to update the key.
+ * <p>
+ * The keys come from a fixed seed so that a position hashes to the same value in every run.
+ */
+final class Zobrist {
+    private static final long[][] PIECES = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EN_PASSANT_FILE = new long[8];
+    private static final long BLACK_TO_MOVE;
+
+    private Zobrist() {
+        throw new AssertionError("Cannot instantiate utility class");
+    }
+
+    static {
+        var random = new SplittableRandom(0x5EED_C4E55L);
+        for (var piece : PIECES) {
+            for (var square = 0; square < piece.length; square++) {
+                piece[square] = random.nextLong();
+            }
+        }
+        // No castling rights hashes to zero so that a bare board of pieces keys as just its pieces.
+        for (var rights = 1; rights < CASTLING.length; rights++) {
+            CASTLING[rights] = random.nextLong();
+        }
+        for (var file = 0; file < EN_PASSANT_FILE.length; file++) {
+            EN_PASSANT_FILE[file] = random.nextLong();
+        }
+        BLACK_TO_MOVE = random.nextLong();
+    }
+
+    /**
+     * @param piece the piece's index into the board's bitboards
+     */
+    static long piece(int piece, int square) {
+        return PIECES[piece][square];
+    }
+
+    static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    static long enPassantFile(int square) {
+        return EN_PASSANT_FILE[square & 7];
+    }
+
+    static long blackToMove() {
+        return BLACK_TO_MOVE;
+    }
+}
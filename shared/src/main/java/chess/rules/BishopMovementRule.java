@@ -1,20 +1,12 @@
 package chess.rules;
 
+import chess.Attacks;
 import chess.ChessBoard;
-import chess.ChessMove;
-import chess.ChessPosition;
-
-import java.util.Collection;
-import java.util.HashSet;
+import chess.ChessGame;
 
 public class BishopMovementRule extends MovementRule {
     @Override
-    public Collection<ChessMove> moves(ChessBoard board, ChessPosition position) {
-        var moves = new HashSet<ChessMove>();
-        calculateMoves(board, position, -1, -1, moves, true);
-        calculateMoves(board, position, 1, -1, moves, true);
-        calculateMoves(board, position, -1, 1, moves, true);
-        calculateMoves(board, position, 1, 1, moves, true);
-        return moves;
+    protected long attacks(ChessBoard board, int square, ChessGame.TeamColor color) {
+        return Attacks.bishop(square, board.occupancy());
     }
 }
@@ -1,25 +1,18 @@
 package chess.rules;
 
-import chess.ChessBoard;
-import chess.ChessGame;
-import chess.ChessMove;
-import chess.ChessPosition;
+import chess.*;
 
 import java.util.Collection;
-import java.util.HashSet;
 
 public class KingMovementRule extends MovementRule {
+    @Override
+    protected long attacks(ChessBoard board, int square, ChessGame.TeamColor color) {
+        return Attacks.king(square);
+    }
+
     @Override
     public Collection<ChessMove> moves(ChessBoard board, ChessPosition position) {
-        var moves = new HashSet<ChessMove>();
-        calculateMoves(board, position, -1, 0, moves, false);
-        calculateMoves(board, position, 1, 0, moves, false);
-        calculateMoves(board, position, 0, 1, moves, false);
-        calculateMoves(board, position, 0, -1, moves, false);
-        calculateMoves(board, position, -1, -1, moves, false);
-        calculateMoves(board, position, 1, 1, moves, false);
-        calculateMoves(board, position, -1, 1, moves, false);
-        calculateMoves(board, position, 1, -1, moves, false);
+        var moves = super.moves(board, position);
 
         addCastleMoves(board, position, moves);
 
@@ -27,23 +20,22 @@ public class KingMovementRule extends MovementRule {
     }
 
 
-    void addCastleMoves(ChessBoard board, ChessPosition pos, HashSet<ChessMove> moves) {
-        var king = board.getPiece(pos);
-        var color = king.getTeamColor();
+    void addCastleMoves(ChessBoard board, ChessPosition pos, Collection<ChessMove> moves) {
+        var color = board.getPiece(pos).getTeamColor();
         var teamRow = color == ChessGame.TeamColor.BLACK ? 8 : 1;
-
-        var kingPos = new ChessPosition(teamRow, 5);
-        if (king.equals(board.getPiece(kingPos)) && board.isOriginalPosition(kingPos)) {
-            if (board.isOriginalPosition(new ChessPosition(teamRow, 8)) &&
-                    board.isSquareEmpty(teamRow, 6) &&
-                    board.isSquareEmpty(teamRow, 7)) {
-                moves.add(new ChessMove(pos, new ChessPosition(teamRow, 7), null));
+        var occupied = board.occupancy();
+        var rooks = board.pieces(color, ChessPiece.PieceType.ROOK);
+
+        if (pos.getRow() == teamRow && pos.getColumn() == 5) {
+            var kingSidePath = Bitboards.bit(teamRow, 6) | Bitboards.bit(teamRow, 7);
+            if (board.hasCastlingRight(color, true) && (rooks & Bitboards.bit(teamRow, 8)) != 0 &&
+                    (occupied & kingSidePath) == 0) {
+                moves.add(new ChessMove(pos, ChessPosition.of(teamRow, 7), null));
             }
-            if (board.isOriginalPosition(new ChessPosition(teamRow, 1)) &&
-                    board.isSquareEmpty(teamRow, 2) &&
-                    board.isSquareEmpty(teamRow, 3) &&
-                    board.isSquareEmpty(teamRow, 4)) {
-                moves.add(new ChessMove(pos, new ChessPosition(teamRow, 3), null));
+            var queenSidePath = Bitboards.bit(teamRow, 2) | Bitboards.bit(teamRow, 3) | Bitboards.bit(teamRow, 4);
+            if (board.hasCastlingRight(color, false) && (rooks & Bitboards.bit(teamRow, 1)) != 0 &&
+                    (occupied & queenSidePath) == 0) {
+                moves.add(new ChessMove(pos, ChessPosition.of(teamRow, 3), null));
             }
         }
     }
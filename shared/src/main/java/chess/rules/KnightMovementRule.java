@@ -1,24 +1,12 @@
 package chess.rules;
 
+import chess.Attacks;
 import chess.ChessBoard;
-import chess.ChessMove;
-import chess.ChessPosition;
-
-import java.util.Collection;
-import java.util.HashSet;
+import chess.ChessGame;
 
 public class KnightMovementRule extends MovementRule {
     @Override
-    public Collection<ChessMove> moves(ChessBoard board, ChessPosition position) {
-        var moves = new HashSet<ChessMove>();
-        calculateMoves(board, position, 2, 1, moves, false);
-        calculateMoves(board, position, 2, -1, moves, false);
-        calculateMoves(board, position, 1, 2, moves, false);
-        calculateMoves(board, position, -1, 2, moves, false);
-        calculateMoves(board, position, -2, -1, moves, false);
-        calculateMoves(board, position, -2, 1, moves, false);
-        calculateMoves(board, position, -1, -2, moves, false);
-        calculateMoves(board, position, 1, -2, moves, false);
-        return moves;
+    protected long attacks(ChessBoard board, int square, ChessGame.TeamColor color) {
+        return Attacks.knight(square);
     }
-}
\ No newline at end of file
+}
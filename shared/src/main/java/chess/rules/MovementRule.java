@@ -1,6 +1,8 @@
 package chess.rules;
 
+import chess.Bitboards;
 import chess.ChessBoard;
+import chess.ChessGame;
 import chess.ChessMove;
 import chess.ChessPosition;
 
@@ -9,24 +11,23 @@ import java.util.HashSet;
 
 public abstract class MovementRule {
 
-    protected void calculateMoves(ChessBoard board, ChessPosition pos, int rowInc, int colInc, HashSet<ChessMove> moves, boolean allowDistance) {
-        var pieceColor = board.getPiece(pos).getTeamColor();
-        int row = pos.getRow() + rowInc;
-        int col = pos.getColumn() + colInc;
-        while (row > 0 && col > 0 && row < 9 && col < 9) {
-            var newPos = new ChessPosition(row, col);
-            var pieceAt = board.getPiece(newPos);
-            if (pieceAt == null || pieceAt.getTeamColor() != pieceColor) {
-                moves.add(new ChessMove(pos, newPos, null));
-                row += rowInc;
-                col += colInc;
-            }
+    /**
+     * The squares a piece of this type standing on square attacks, given the current occupancy of the board.
+     */
+    protected abstract long attacks(ChessBoard board, int square, ChessGame.TeamColor color);
 
-            if (!allowDistance || pieceAt != null) {
-                break;
-            }
-        }
+    public Collection<ChessMove> moves(ChessBoard board, ChessPosition position) {
+        var pieceColor = board.getPiece(position).getTeamColor();
+        var targets = attacks(board, Bitboards.square(position), pieceColor) & ~board.occupancy(pieceColor);
+
+        var moves = new HashSet<ChessMove>();
+        addMoves(position, targets, moves);
+        return moves;
     }
 
-    public abstract Collection<ChessMove> moves(ChessBoard board, ChessPosition position);
+    protected void addMoves(ChessPosition pos, long targets, Collection<ChessMove> moves) {
+        for (var mask = targets; mask != 0; mask &= mask - 1) {
+            moves.add(new ChessMove(pos, Bitboards.position(Long.numberOfTrailingZeros(mask)), null));
+        }
+    }
 }
@@ -6,43 +6,36 @@ import java.util.Collection;
 import java.util.HashSet;
 
 public class PawnMovementRule extends MovementRule {
+    @Override
+    protected long attacks(ChessBoard board, int square, ChessGame.TeamColor color) {
+        return Attacks.pawn(color, square);
+    }
+
     @Override
     public Collection<ChessMove> moves(ChessBoard board, ChessPosition pos) {
         var pieceColor = board.getPiece(pos).getTeamColor();
+        var enemyColor = pieceColor == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+        var square = Bitboards.square(pos);
+        var empty = ~board.occupancy();
 
         var moves = new HashSet<ChessMove>();
-        var direction = (pieceColor == ChessGame.TeamColor.WHITE ? 1 : -1);
+        var white = pieceColor == ChessGame.TeamColor.WHITE;
+        var pawn = Bitboards.bit(square);
 
-        calculateMoves(board, pos, direction, 0, moves, false);
-        calculateMoves(board, pos, direction, -1, moves, true);
-        calculateMoves(board, pos, direction, 1, moves, true);
-        addEnPassantMoves(board, pos, moves);
+        var singlePush = (white ? pawn << 8 : pawn >>> 8) & empty;
+        var targets = singlePush | (attacks(board, square, pieceColor) & board.occupancy(enemyColor));
+        if (white && pos.getRow() == 2 || !white && pos.getRow() == 7) {
+            targets |= (white ? singlePush << 8 : singlePush >>> 8) & empty;
+        }
 
-        if (pieceColor == ChessGame.TeamColor.WHITE && pos.getRow() == 2 || pieceColor == ChessGame.TeamColor.BLACK && pos.getRow() == 7) {
-            if (board.isSquareEmpty(pos.getRow() + direction, pos.getColumn()) &&
-                    board.isSquareEmpty(pos.getRow() + (direction * 2), pos.getColumn())) {
-                moves.add(new ChessMove(pos, new ChessPosition(pos.getRow() + (direction * 2), pos.getColumn()), null));
-            }
+        for (var mask = targets; mask != 0; mask &= mask - 1) {
+            addMoveWithPossiblePromotion(pos, Bitboards.position(Long.numberOfTrailingZeros(mask)), moves);
         }
+        addEnPassantMoves(board, pos, moves);
 
         return moves;
     }
 
-    @Override
-    protected void calculateMoves(ChessBoard board, ChessPosition pos, int rowInc, int colInc, HashSet<ChessMove> moves, boolean attack) {
-        var pieceColor = board.getPiece(pos).getTeamColor();
-        int row = pos.getRow() + rowInc;
-        int col = pos.getColumn() + colInc;
-        if (row > 0 && col > 0 && row < 9 && col < 9) {
-            var newPos = new ChessPosition(row, col);
-            var pieceAt = board.getPiece(newPos);
-            if ((attack && pieceAt != null && pieceAt.getTeamColor() != pieceColor)
-                    || (!attack && pieceAt == null)) {
-                addMoveWithPossiblePromotion(pos, newPos, moves);
-            }
-        }
-    }
-
     private void addMoveWithPossiblePromotion(ChessPosition pos, ChessPosition newPos, HashSet<ChessMove> moves) {
         if (newPos.getRow() == 1 || newPos.getRow() == 8) {
             moves.add(new ChessMove(pos, newPos, ChessPiece.PieceType.QUEEN));
@@ -56,27 +49,14 @@ public class PawnMovementRule extends MovementRule {
 
 
     private void addEnPassantMoves(ChessBoard board, ChessPosition pos, HashSet<ChessMove> moves) {
-        var pawn = board.getPiece(pos);
-        var color = pawn.getTeamColor();
-        var passantRow = color == ChessGame.TeamColor.BLACK ? 4 : 5;
-        var startRow = color == ChessGame.TeamColor.BLACK ? 2 : 7;
-        var attackRow = color == ChessGame.TeamColor.BLACK ? 3 : 6;
-
-        addPassant(pos.getColumn(), pos.getColumn() + 1, passantRow, startRow, attackRow, board, color, moves);
-        addPassant(pos.getColumn(), pos.getColumn() - 1, passantRow, startRow, attackRow, board, color, moves);
-    }
-
-    private void addPassant(int column, int passantColumn, int passantRow, int startRow, int attackRow,
-                            ChessBoard board, ChessGame.TeamColor color, HashSet<ChessMove> moves) {
-        if (passantColumn >= 1 && passantColumn <= 8) {
-            var passantMove = new ChessMove(new ChessPosition(startRow, passantColumn), new ChessPosition(passantRow, passantColumn), null);
-            var candidate = board.getPiece(passantMove.getEndPosition());
-            if (candidate != null && candidate.getPieceType() == ChessPiece.PieceType.PAWN && candidate.getTeamColor() != color) {
-                var lastMove = board.getLastMove();
-                if (passantMove.equals(lastMove)) {
-                    moves.add(new ChessMove(new ChessPosition(passantRow, column), new ChessPosition(attackRow, passantColumn), null));
-                }
-            }
+        var color = board.getPiece(pos).getTeamColor();
+        var target = board.enPassantSquare();
+        // White can only capture onto the sixth row and black onto the third, which also rules out
+        // capturing behind a pawn of the same color.
+        var targetRow = color == ChessGame.TeamColor.WHITE ? 6 : 3;
+        if (target != ChessBoard.NO_SQUARE && (target >>> 3) + 1 == targetRow &&
+                (attacks(board, Bitboards.square(pos), color) & Bitboards.bit(target)) != 0) {
+            moves.add(new ChessMove(pos, Bitboards.position(target), null));
         }
     }
-}
\ No newline at end of file
+}
@@ -8,8 +8,17 @@ import com.google.gson.Gson;
 import static chess.ChessGame.TeamColor.BLACK;
 import static chess.ChessGame.TeamColor.WHITE;
 
+/**
+ * @param version goes up by one each time the stored game changes, so that a change based on an
+ *                out of date copy of the game can be turned away
+ */
 public record GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game,
-                       State state, String description) {
+                       State state, String description, int version) {
+
+    public GameData(int gameID, String whiteUsername, String blackUsername, String gameName, ChessGame game,
+                    State state, String description) {
+        this(gameID, whiteUsername, blackUsername, gameName, game, state, description, 0);
+    }
 
     public enum State {
         WHITE,
@@ -23,19 +32,20 @@ public record GameData(int gameID, String whiteUsername, String blackUsername, S
 
         game.makeMove(move);
 
-        if (game.isInStalemate(WHITE) || game.isInStalemate(BLACK)) {
-            return setState(State.DRAW, "game is a draw");
-        } else if (game.isInCheckmate(WHITE)) {
-            return setState(State.BLACK, String.format("Black player, %s, won!", blackUsername()));
-        } else if (game.isInCheckmate(BLACK)) {
-            return setState(State.WHITE, String.format("White player, %s, won!", whiteUsername()));
-        } else if (game.isInCheck(WHITE)) {
-            return setState(State.UNDECIDED, String.format("White player, %s, is in check!", whiteUsername()));
-        } else if (game.isInCheck(BLACK)) {
-            return setState(State.UNDECIDED, String.format("Black player, %s, is in check!", blackUsername()));
-        }
-
-        return setState(State.UNDECIDED, String.format("%s moved %s. %s's turn.", username, move, game.turn));
+        var toMove = game.getTeamTurn();
+        return switch (game.getStatus()) {
+            case STALEMATE -> setState(State.DRAW, "game is a draw");
+            case THREEFOLD_REPETITION -> setState(State.DRAW, "game is a draw by threefold repetition");
+            case FIFTY_MOVE_RULE -> setState(State.DRAW, "game is a draw by the fifty-move rule");
+            case INSUFFICIENT_MATERIAL -> setState(State.DRAW, "game is a draw by insufficient material");
+            case CHECKMATE -> toMove == WHITE ?
+                    setState(State.BLACK, String.format("Black player, %s, won!", blackUsername())) :
+                    setState(State.WHITE, String.format("White player, %s, won!", whiteUsername()));
+            case CHECK -> toMove == WHITE ?
+                    setState(State.UNDECIDED, String.format("White player, %s, is in check!", whiteUsername())) :
+                    setState(State.UNDECIDED, String.format("Black player, %s, is in check!", blackUsername()));
+            case IN_PROGRESS -> setState(State.UNDECIDED, String.format("%s moved %s. %s's turn.", username, move, toMove));
+        };
     }
 
     public void validateTurn(String username) throws InvalidMoveException {
@@ -52,15 +62,19 @@ public record GameData(int gameID, String whiteUsername, String blackUsername, S
     }
 
     public GameData setWhite(String username) {
-        return new GameData(this.gameID, username, this.blackUsername, this.gameName, this.game, this.state, this.description);
+        return new GameData(this.gameID, username, this.blackUsername, this.gameName, this.game, this.state, this.description, this.version);
     }
 
     public GameData setBlack(String username) {
-        return new GameData(this.gameID, this.whiteUsername, username, this.gameName, this.game, this.state, this.description);
+        return new GameData(this.gameID, this.whiteUsername, username, this.gameName, this.game, this.state, this.description, this.version);
     }
 
     public GameData setState(State state, String description) {
-        return new GameData(this.gameID, this.whiteUsername, this.blackUsername, this.gameName, this.game, state, description);
+        return new GameData(this.gameID, this.whiteUsername, this.blackUsername, this.gameName, this.game, state, description, this.version);
+    }
+
+    public GameData setVersion(int version) {
+        return new GameData(this.gameID, this.whiteUsername, this.blackUsername, this.gameName, this.game, this.state, this.description, version);
     }
 
     @Override
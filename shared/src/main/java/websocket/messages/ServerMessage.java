@@ -11,6 +11,8 @@ import java.util.Objects;
  * methods.
  */
 public class ServerMessage {
+    private static final Gson GSON = new Gson();
+
     ServerMessageType serverMessageType;
 
     public enum ServerMessageType {
@@ -46,6 +48,6 @@ public class ServerMessage {
 
     @Override
     public String toString() {
-        return new Gson().toJson(this);
+        return GSON.toJson(this);
     }
 }
@@ -0,0 +1,154 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+public class ChessBoardTests {
+
+    @Test
+    @DisplayName("Make and Unmake Restore the Board")
+    public void makeUnmake() {
+        var board = new ChessBoard();
+        board.resetBoard();
+        var original = new ChessBoard(board);
+
+        board.makeMove(move("e2e4"));
+        board.makeMove(move("d7d5"));
+        board.makeMove(move("e4d5"));
+        Assertions.assertNotEquals(original, board);
+
+        board.unmakeMove();
+        board.unmakeMove();
+        board.unmakeMove();
+        Assertions.assertEquals(original, board);
+        Assertions.assertEquals(ChessBoard.ALL_CASTLING_RIGHTS, board.castlingRights);
+        Assertions.assertEquals(ChessBoard.NO_SQUARE, board.enPassantSquare());
+    }
+
+    @Test
+    @DisplayName("Move From an Empty Square")
+    public void moveFromEmptySquare() {
+        var board = new ChessBoard();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.makeMove(move("e2e4")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.movePiece(move("e2e4")));
+
+        board.resetBoard();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> board.makeMove(move("e3e4")));
+        Assertions.assertEquals(0, board.getHistory().size());
+    }
+
+    @Test
+    @DisplayName("Castle and En Passant Helpers")
+    public void castleAndEnPassant() {
+        var board = new ChessBoard();
+        board.addPiece(ChessPosition.of(1, 7), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.KING));
+        board.addPiece(ChessPosition.of(1, 8), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK));
+        board.castle(move("e1g1"));
+        Assertions.assertNull(board.getPiece(ChessPosition.of(1, 8)));
+        Assertions.assertEquals(ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.ROOK),
+                board.getPiece(ChessPosition.of(1, 6)));
+
+        board.addPiece(ChessPosition.of(6, 4), ChessPiece.of(ChessGame.TeamColor.WHITE, ChessPiece.PieceType.PAWN));
+        board.addPiece(ChessPosition.of(5, 4), ChessPiece.of(ChessGame.TeamColor.BLACK, ChessPiece.PieceType.PAWN));
+        board.enPassant(move("e5d6"));
+        Assertions.assertNull(board.getPiece(ChessPosition.of(5, 4)));
+        Assertions.assertNotNull(board.getPiece(ChessPosition.of(6, 4)));
+    }
+
+    @Test
+    @DisplayName("Original Position Survives a Reload")
+    public void originalPosition() {
+        var game = ChessGame.fromFen("r3k2r/8/8/8/8/8/P6P/R3K2R w Kq - 0 1");
+        var board = ChessGame.fromBytes(game.toBytes()).getBoard();
+        Assertions.assertTrue(board.isOriginalPosition(ChessPosition.of(1, 5)));
+        Assertions.assertTrue(board.isOriginalPosition(ChessPosition.of(1, 8)));
+        Assertions.assertFalse(board.isOriginalPosition(ChessPosition.of(1, 1)), "white can't castle queen side");
+        Assertions.assertTrue(board.isOriginalPosition(ChessPosition.of(8, 1)));
+        Assertions.assertFalse(board.isOriginalPosition(ChessPosition.of(8, 8)), "black can't castle king side");
+        Assertions.assertTrue(board.isOriginalPosition(ChessPosition.of(2, 1)));
+        Assertions.assertFalse(board.isOriginalPosition(ChessPosition.of(3, 1)), "empty square");
+
+        board.makeMove(move("e1f1"));
+        Assertions.assertFalse(board.isOriginalPosition(ChessPosition.of(1, 8)));
+        board.makeMove(move("a2a3"));
+        Assertions.assertFalse(board.isOriginalPosition(ChessPosition.of(3, 1)));
+    }
+
+    @Test
+    @DisplayName("Incremental Zobrist Key Matches a Recomputed One")
+    public void zobristKeyIncremental() {
+        var random = new Random(240);
+        var moves = new MoveList();
+        for (var game = 0; game < 50; game++) {
+            var board = new ChessBoard();
+            board.resetBoard();
+            var startKey = board.zobristKey();
+            var turn = ChessGame.TeamColor.WHITE;
+            var played = 0;
+            for (; played < 80; played++) {
+                moves.clear();
+                MoveGenerator.generate(board, turn, -1L, moves);
+                if (moves.isEmpty()) {
+                    break;
+                }
+                board.makeMove(moves.get(random.nextInt(moves.size())));
+                Assertions.assertEquals(rebuilt(board).zobristKey(), board.zobristKey(), "after move " + played);
+                turn = turn == ChessGame.TeamColor.WHITE ? ChessGame.TeamColor.BLACK : ChessGame.TeamColor.WHITE;
+            }
+            for (; played > 0; played--) {
+                board.unmakeMove();
+                Assertions.assertEquals(rebuilt(board).zobristKey(), board.zobristKey(), "after unmake " + played);
+            }
+            Assertions.assertEquals(startKey, board.zobristKey());
+        }
+    }
+
+    @Test
+    @DisplayName("Castling Rights and En Passant Change the Zobrist Key")
+    public void zobristKeyState() {
+        var game = ChessGame.fromFen("4k3/8/8/8/3p4/8/4P3/R3K2R w KQ - 0 1");
+        var board = game.getBoard();
+        var withRights = board.zobristKey();
+        board.castlingRights = ChessBoard.CASTLE_WHITE_KING_SIDE;
+        Assertions.assertNotEquals(withRights, board.zobristKey(), "castling rights are part of the key");
+        board.castlingRights = ChessBoard.CASTLE_WHITE_KING_SIDE | ChessBoard.CASTLE_WHITE_QUEEN_SIDE;
+        Assertions.assertEquals(withRights, board.zobristKey());
+
+        // e2e4 lets the pawn on d4 capture en passant, so the key differs from the same pieces without it.
+        board.makeMove(move("e2e4"));
+        var withEnPassant = board.zobristKey();
+        board.enPassantSquare = ChessBoard.NO_SQUARE;
+        Assertions.assertNotEquals(withEnPassant, board.zobristKey(), "a possible en passant capture is part of the key");
+
+        // With no pawn able to capture, the en passant square doesn't change the position.
+        var quiet = ChessGame.fromFen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1").getBoard();
+        quiet.makeMove(move("e2e4"));
+        var afterDoubleStep = quiet.zobristKey();
+        quiet.enPassantSquare = ChessBoard.NO_SQUARE;
+        Assertions.assertEquals(afterDoubleStep, quiet.zobristKey());
+    }
+
+    /**
+     * @return a board with the same pieces and state, whose key is computed from scratch
+     */
+    private static ChessBoard rebuilt(ChessBoard board) {
+        var fresh = new ChessBoard();
+        for (var placement : board.collection()) {
+            fresh.addPiece(placement.getPos(), placement.getPiece());
+        }
+        fresh.castlingRights = board.castlingRights;
+        fresh.enPassantSquare = board.enPassantSquare;
+        return fresh;
+    }
+
+    static ChessMove move(String notation) {
+        try {
+            return new ChessMove(notation);
+        } catch (Exception ex) {
+            throw new IllegalArgumentException(notation, ex);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.UnaryOperator;
+
+import static chess.ChessBoardTests.move;
+
+public class ChessGameDrawTests {
+    private static final String[] KNIGHT_SHUFFLE = {"g1f3", "g8f6", "f3g1", "f6g8"};
+
+    @Test
+    @DisplayName("Threefold Repetition")
+    public void threefoldRepetition() throws InvalidMoveException {
+        var game = new ChessGame();
+        play(game, KNIGHT_SHUFFLE);
+        Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS, game.getStatus(), "only the second occurrence");
+        play(game, KNIGHT_SHUFFLE);
+        Assertions.assertTrue(game.isThreefoldRepetition());
+        Assertions.assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, game.getStatus());
+    }
+
+    @Test
+    @DisplayName("Pawn Move Resets Repetition")
+    public void pawnMoveResetsRepetition() throws InvalidMoveException {
+        var game = new ChessGame();
+        play(game, KNIGHT_SHUFFLE);
+        play(game, "e2e4", "e7e5");
+        play(game, KNIGHT_SHUFFLE);
+        Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS, game.getStatus());
+    }
+
+    @Test
+    @DisplayName("JSON Leaves Out the Repetition Keys")
+    public void jsonWithoutKeys() throws InvalidMoveException {
+        var game = new ChessGame();
+        var json = game.toString();
+        play(game, KNIGHT_SHUFFLE);
+        play(game, KNIGHT_SHUFFLE);
+        Assertions.assertEquals(json.length(), game.toString().length());
+        Assertions.assertFalse(game.toString().contains("positionKeys"));
+        Assertions.assertTrue(ChessGame.fromString(game.toString()).positionKeys().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Repetition Detected After Reloading From Bytes")
+    public void repetitionAfterBytes() throws InvalidMoveException {
+        repetitionAfterReload(game -> ChessGame.fromBytes(game.toBytes()));
+    }
+
+    @Test
+    @DisplayName("Repetition Detected After Copying")
+    public void repetitionAfterCopy() throws InvalidMoveException {
+        repetitionAfterReload(ChessGame::new);
+    }
+
+    @Test
+    @DisplayName("Fifty Move Rule")
+    public void fiftyMoveRule() throws InvalidMoveException {
+        var game = ChessGame.fromFen("4k3/8/8/8/8/8/4P3/R3K3 w - - 98 70");
+        play(game, "a1a2");
+        Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS, game.getStatus());
+        play(game, "e8d8");
+        Assertions.assertEquals(100, game.getHalfmoveClock());
+        Assertions.assertEquals(ChessGame.GameStatus.FIFTY_MOVE_RULE, game.getStatus());
+
+        var reset = ChessGame.fromFen("4k3/8/8/8/8/8/4P3/R3K3 w - - 99 70");
+        play(reset, "e2e3");
+        Assertions.assertEquals(0, reset.getHalfmoveClock());
+        Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS, reset.getStatus());
+    }
+
+    @Test
+    @DisplayName("Insufficient Material")
+    public void insufficientMaterial() {
+        Assertions.assertEquals(ChessGame.GameStatus.INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("4k3/8/8/8/8/8/8/4K3 w - - 0 1").getStatus(), "kings only");
+        Assertions.assertEquals(ChessGame.GameStatus.INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("4k3/8/8/8/8/8/8/4KN2 w - - 0 1").getStatus(), "one knight");
+        Assertions.assertEquals(ChessGame.GameStatus.INSUFFICIENT_MATERIAL,
+                ChessGame.fromFen("2b1k3/8/8/8/8/8/8/4KB2 w - - 0 1").getStatus(), "bishops on the same color");
+
+        Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS,
+                ChessGame.fromFen("1b2k3/8/8/8/8/8/8/4KB2 w - - 0 1").getStatus(), "bishops on both colors");
+        Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS,
+                ChessGame.fromFen("4k3/8/8/8/8/8/8/3NKN2 w - - 0 1").getStatus(), "two knights");
+        Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS,
+                ChessGame.fromFen("4k3/8/8/8/8/8/4P3/4K3 w - - 0 1").getStatus(), "a pawn");
+    }
+
+    /**
+     * Plays the start position twice, reloads the game, and checks the third occurrence is still
+     * caught, without changing the game it was reloaded from.
+     */
+    private static void repetitionAfterReload(UnaryOperator<ChessGame> reload) throws InvalidMoveException {
+        var game = new ChessGame();
+        play(game, KNIGHT_SHUFFLE);
+        var reloaded = reload.apply(game);
+        Assertions.assertEquals(game.positionKeys(), reloaded.positionKeys());
+
+        play(reloaded, KNIGHT_SHUFFLE);
+        Assertions.assertEquals(ChessGame.GameStatus.THREEFOLD_REPETITION, reloaded.getStatus());
+        Assertions.assertEquals(ChessGame.GameStatus.IN_PROGRESS, game.getStatus());
+    }
+
+    private static void play(ChessGame game, String... moves) throws InvalidMoveException {
+        for (var notation : moves) {
+            game.makeMove(move(notation));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static chess.ChessBoardTests.move;
+
+public class FenTests {
+    private static final String START = "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1";
+
+    @Test
+    @DisplayName("Start Position")
+    public void startPosition() {
+        Assertions.assertEquals(START, new ChessGame().toFen());
+        var game = ChessGame.fromFen(START);
+        Assertions.assertEquals(new ChessGame(), game);
+        Assertions.assertEquals(new ChessGame().zobristKey(), game.zobristKey());
+    }
+
+    @Test
+    @DisplayName("Round Trip")
+    public void roundTrip() {
+        var positions = new String[]{
+                "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1",
+                "rnbqkbnr/pppp1ppp/8/8/3Pp3/8/PPP1PPPP/RNBQKBNR b KQkq d3 0 3",
+                "rnbqkbnr/ppp1pppp/8/3pP3/8/8/PPPP1PPP/RNBQKBNR w Kq d6 0 3",
+                "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 12 40",
+        };
+        for (var fen : positions) {
+            Assertions.assertEquals(fen, ChessGame.fromFen(fen).toFen());
+        }
+    }
+
+    @Test
+    @DisplayName("Moves Update the FEN")
+    public void afterMoves() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(move("e2e4"));
+        Assertions.assertEquals("rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 0 1", game.toFen());
+        game.makeMove(move("g8f6"));
+        game.makeMove(move("e1e2"));
+        Assertions.assertEquals("rnbqkb1r/pppppppp/5n2/8/4P3/8/PPPPKPPP/RNBQ1BNR b kq - 2 2", game.toFen());
+    }
+
+    @Test
+    @DisplayName("Optional Move Counters")
+    public void optionalCounters() {
+        var game = ChessGame.fromFen("rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq -");
+        Assertions.assertEquals(START, game.toFen());
+    }
+
+    @Test
+    @DisplayName("Invalid FEN")
+    public void invalid() {
+        var invalid = new String[]{
+                "",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNRR w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNX w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR x KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkx - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KKQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - zero 1",
+                // Negative or zero counters.
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e3 -4 0",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 0",
+                // En passant squares off the third or sixth row, for the wrong side, or with no pawn.
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq e4 0 1",
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR w KQkq e3 0 1",
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq d3 0 1",
+                "rnbqkbnr/pppppppp/8/8/4P3/8/PPPP1PPP/RNBQKBNR b KQkq z9 0 1",
+                // Castling rights without the king or rook on its starting square.
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBN1 w KQkq - 0 1",
+                "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQ1KNR w KQkq - 0 1",
+                "1nbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+                // Missing or extra kings.
+                "8/8/8/8/8/8/8/8 w - - 0 1",
+                "4k3/8/8/8/8/8/8/8 w - - 0 1",
+                "4k3/8/8/8/8/8/8/3KK3 w - - 0 1",
+        };
+        for (var fen : invalid) {
+            Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromFen(fen), fen);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package chess;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static chess.ChessBoardTests.move;
+
+public class GameCodecTests {
+
+    @Test
+    @DisplayName("Start Position Size")
+    public void startPositionSize() {
+        var game = new ChessGame();
+        Assertions.assertEquals(30, game.toBytes().length);
+        Assertions.assertEquals(game.toFen(), ChessGame.fromBytes(game.toBytes()).toFen());
+    }
+
+    @Test
+    @DisplayName("Round Trip")
+    public void roundTrip() throws InvalidMoveException {
+        var game = new ChessGame();
+        for (var notation : new String[]{"e2e4", "c7c5", "g1f3", "d7d6", "f1b5", "b8c6", "e1g1", "c5c4", "d2d4"}) {
+            game.makeMove(move(notation));
+        }
+        assertRoundTrip(game);
+
+        assertRoundTrip(ChessGame.fromFen("r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1"));
+        assertRoundTrip(ChessGame.fromFen("8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 b - - 300 200"));
+    }
+
+    @Test
+    @DisplayName("Unknown Version")
+    public void unknownVersion() {
+        var data = new ChessGame().toBytes();
+        data[0] = 3;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromBytes(data));
+        data[0] = 0;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromBytes(data));
+    }
+
+    @Test
+    @DisplayName("En Passant Square Out of Range")
+    public void invalidEnPassant() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(move("e2e4"));
+        var data = game.toBytes();
+        // The en passant byte follows the mask, the 16 bytes of pieces and the state byte.
+        var offset = 1 + 8 + 16 + 1;
+        Assertions.assertEquals(Bitboards.square(ChessPosition.of(3, 5)) + 1, data[offset]);
+
+        data[offset] = 65;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromBytes(data));
+        data[offset] = (byte) 255;
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromBytes(data));
+        data[offset] = 0;
+        Assertions.assertEquals(ChessBoard.NO_SQUARE, ChessGame.fromBytes(data).getBoard().enPassantSquare());
+    }
+
+    @Test
+    @DisplayName("Truncated Data")
+    public void truncated() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(move("g1f3"));
+        var data = game.toBytes();
+        for (var length = 0; length < data.length; length++) {
+            var prefix = Arrays.copyOf(data, length);
+            Assertions.assertThrows(IllegalArgumentException.class, () -> ChessGame.fromBytes(prefix), "length " + length);
+        }
+    }
+
+    @Test
+    @DisplayName("Version 1 Skips the History")
+    public void versionWithHistory() {
+        var game = new ChessGame();
+        var v2 = game.toBytes();
+        // Version 1 put the history, a varint count and 2 bytes per move, just before the repetition keys.
+        var v1 = new byte[v2.length + 3];
+        System.arraycopy(v2, 0, v1, 0, v2.length - 1);
+        v1[0] = 1;
+        v1[v2.length - 1] = 1;
+        v1[v2.length] = 0x0C;
+        v1[v2.length + 1] = 0x1C;
+        v1[v2.length + 2] = v2[v2.length - 1];
+        Assertions.assertEquals(game.toFen(), ChessGame.fromBytes(v1).toFen());
+    }
+
+    @Test
+    @DisplayName("JSON Stored Before the Codec")
+    public void jsonFallback() throws InvalidMoveException {
+        var game = new ChessGame();
+        game.makeMove(move("e2e4"));
+        var decoded = ChessGame.fromBytes(game.toString().getBytes(StandardCharsets.UTF_8));
+        Assertions.assertEquals(game, decoded);
+        Assertions.assertEquals(game.toFen(), decoded.toFen());
+    }
+
+    @Test
+    @DisplayName("Legacy Squares JSON Is Replayed")
+    public void legacyReplay() throws InvalidMoveException {
+        var moves = new ChessMove[]{move("e2e4"), move("e7e5"), move("e1e2")};
+        var game = new ChessGame();
+        for (var m : moves) {
+            game.makeMove(m);
+        }
+
+        var migrated = ChessGame.fromString(legacyJson(game.getBoard(), moves, ChessGame.TeamColor.BLACK));
+        Assertions.assertEquals(game, migrated);
+        Assertions.assertEquals(game.toFen(), migrated.toFen());
+        Assertions.assertEquals(game.zobristKey(), migrated.zobristKey());
+    }
+
+    @Test
+    @DisplayName("Legacy Squares JSON Keeps Stored Pieces")
+    public void legacyStoredPieces() {
+        // A board set up by hand, with a history that doesn't lead to it.
+        var game = ChessGame.fromFen("4k2r/8/8/8/8/8/4P3/R3K3 w Qk - 0 1");
+        var moves = new ChessMove[]{move("h1h2"), move("e7e5"), move("h2h3"), move("e5e4")};
+
+        var migrated = ChessGame.fromString(legacyJson(game.getBoard(), moves, ChessGame.TeamColor.WHITE));
+        Assertions.assertEquals(game.getBoard(), migrated.getBoard());
+        Assertions.assertEquals(ChessGame.TeamColor.WHITE, migrated.getTeamTurn());
+        Assertions.assertFalse(migrated.getBoard().hasCastlingRight(ChessGame.TeamColor.WHITE, true));
+        Assertions.assertTrue(migrated.getBoard().hasCastlingRight(ChessGame.TeamColor.WHITE, false));
+        Assertions.assertTrue(migrated.getBoard().hasCastlingRight(ChessGame.TeamColor.BLACK, true));
+        Assertions.assertEquals(moves.length, migrated.getBoard().getHistory().size());
+    }
+
+    private static void assertRoundTrip(ChessGame game) {
+        var decoded = ChessGame.fromBytes(game.toBytes());
+        Assertions.assertEquals(game, decoded);
+        Assertions.assertEquals(game.toFen(), decoded.toFen());
+        Assertions.assertEquals(game.positionKeys(), decoded.positionKeys());
+        Assertions.assertEquals(game.zobristKey(), decoded.zobristKey());
+    }
+
+    /**
+     * @return the game as the original board stored it, with its pieces in an 8x8 squares array
+     */
+    private static String legacyJson(ChessBoard board, ChessMove[] history, ChessGame.TeamColor turn) {
+        var gson = new Gson();
+        var squares = new ChessPiece[8][8];
+        for (var placement : board.collection()) {
+            squares[placement.getPos().getRow() - 1][placement.getPos().getColumn() - 1] = placement.getPiece();
+        }
+        var boardJson = new JsonObject();
+        boardJson.add("squares", gson.toJsonTree(squares));
+        boardJson.add("history", gson.toJsonTree(history));
+        var json = new JsonObject();
+        json.add("board", boardJson);
+        json.add("turn", gson.toJsonTree(turn));
+        return json.toString();
+    }
+}
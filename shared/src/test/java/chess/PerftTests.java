@@ -0,0 +1,62 @@
+package chess;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ForkJoinPool;
+
+public class PerftTests {
+    private static final String KIWIPETE = "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq - 0 1";
+    // Position 4 of the same published set, mirrored so that black is to move.
+    private static final String MIRRORED_POSITION_4 = "r2q1rk1/pP1p2pp/Q4n2/bbp1p3/Np6/1B3NBn/pPPP1PPP/R3K2R b KQ - 0 1";
+
+    @Test
+    @DisplayName("Start Position Node Counts")
+    public void startPosition() {
+        assertCounts(new ChessGame(), 1, 20, 400, 8_902, 197_281);
+    }
+
+    @Test
+    @DisplayName("Kiwipete Node Counts")
+    public void kiwipete() {
+        assertCounts(ChessGame.fromFen(KIWIPETE), 1, 48, 2_039, 97_862);
+    }
+
+    @Test
+    @DisplayName("Black to Move Node Counts")
+    public void blackToMove() {
+        assertCounts(ChessGame.fromFen(MIRRORED_POSITION_4), 1, 6, 264, 9_467);
+    }
+
+    @Test
+    @DisplayName("Divide by First Move")
+    public void divide() {
+        var divide = Perft.divide(new ChessGame(), 3);
+        Assertions.assertEquals(20, divide.size());
+        Assertions.assertEquals(600L, (long) divide.get(ChessBoardTests.move("e2e4")));
+        Assertions.assertEquals(440L, (long) divide.get(ChessBoardTests.move("g1f3")));
+    }
+
+    /**
+     * Checks perft and the sum of divide at each depth, with the common pool and a pool of two
+     * threads, and that the game itself is left as it was.
+     */
+    private static void assertCounts(ChessGame game, long... nodes) {
+        var fen = game.toFen();
+        var pool = new ForkJoinPool(2);
+        try {
+            for (var depth = 0; depth < nodes.length; depth++) {
+                Assertions.assertEquals(nodes[depth], Perft.perft(game, depth), "perft(" + depth + ")");
+                Assertions.assertEquals(nodes[depth], Perft.perft(game, depth, pool), "perft(" + depth + ") on two threads");
+                if (depth > 0) {
+                    var total = Perft.divide(game, depth, pool).values().stream().mapToLong(Long::longValue).sum();
+                    Assertions.assertEquals(nodes[depth], total, "divide(" + depth + ")");
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        Assertions.assertEquals(fen, game.toFen());
+    }
+}